@@ -1,15 +1,21 @@
 package energosoft.rs.security;
 
 import energosoft.rs.security.constant.FileConstant;
+import energosoft.rs.security.utilty.BoundedPasswordEncoder;
+import energosoft.rs.security.utilty.PasswordEncoders;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.springframework.web.filter.CorsFilter;
 
 import java.io.File;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
 
@@ -18,6 +24,7 @@ import java.util.Collections;
  **/
 
 @SpringBootApplication
+@EnableScheduling
 public class SecurityApplication {
 
     public static void main(String[] args) {
@@ -27,8 +34,19 @@ public class SecurityApplication {
 
 
     @Bean
-    public BCryptPasswordEncoder bCryptPasswordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(MeterRegistry meterRegistry,
+                                           @Value("${password.hashing.threads:0}") int threads,
+                                           @Value("${password.hashing.queue-capacity:64}") int queueCapacity,
+                                           @Value("${password.hashing.retry-after:PT1S}") Duration retryAfter,
+                                           @Value("${password.hashing.algorithm:bcrypt}") String algorithm,
+                                           @Value("${password.hashing.bcrypt.strength:0}") int strength,
+                                           @Value("${password.hashing.bcrypt.target-latency:50ms}") Duration targetLatency,
+                                           @Value("${password.hashing.bcrypt.min-strength:10}") int minStrength,
+                                           @Value("${password.hashing.bcrypt.max-strength:16}") int maxStrength) {
+        int bcryptStrength = strength > 0 ? strength
+                : PasswordEncoders.calibrateBCryptStrength(targetLatency, minStrength, maxStrength);
+        return new BoundedPasswordEncoder(PasswordEncoders.delegating(algorithm, bcryptStrength), meterRegistry,
+                threads, queueCapacity, retryAfter);
     }
 
 
@@ -39,9 +57,9 @@ public class SecurityApplication {
         corsConfiguration.setAllowCredentials(true);
         corsConfiguration.setAllowedOrigins(Collections.singletonList("http://localhost:4200"));
         corsConfiguration.setAllowedHeaders(Arrays.asList("Origin", "Access-Control-Allow-Origin", "Content-Type",
-                "Accept", "Jwt-Token", "Authorization", "Origin, Accept", "X-Requested-With",
+                "Accept", "Jwt-Token", "Refresh-Token", "Authorization", "Origin, Accept", "X-Requested-With",
                 "Access-Control-Request-Method", "Access-Control-Request-Headers"));
-        corsConfiguration.setExposedHeaders(Arrays.asList("Origin", "Content-Type", "Accept", "Jwt-Token", "Authorization",
+        corsConfiguration.setExposedHeaders(Arrays.asList("Origin", "Content-Type", "Accept", "Jwt-Token", "Refresh-Token", "X-Next-Cursor", "Authorization",
                 "Access-Control-Allow-Origin", "Access-Control-Allow-Origin", "Access-Control-Allow-Credentials"));
         corsConfiguration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         urlBasedCorsConfigurationSource.registerCorsConfiguration("/**", corsConfiguration);
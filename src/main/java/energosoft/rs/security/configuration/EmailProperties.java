@@ -0,0 +1,50 @@
+package energosoft.rs.security.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+import static energosoft.rs.security.constant.EmailConstant.*;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  email.* from application.yml, read by EmailService. Defaults are the EmailConstant values, so a configuration
+ *  without an email section keeps sending through Gmail as before.
+ **/
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "email")
+public class EmailProperties {
+
+    private String from = FROM_EMAIL;
+    private String cc = CC_EMAIL;
+    private String subject = EMAIL_SUBJECT;
+    private Smtp smtp = new Smtp();
+
+    @Data
+    public static class Smtp {
+        private String protocol = SIMPLE_MAIL_TRANSFER_PROTOCOL;  // smtps, or smtp for plain/STARTTLS servers
+        private String host = GMAIL_SMTP_SERVER;
+        private int port = DEFAULT_PORT;
+        private String username = USERNAME;
+        private String password = PASSWORD;
+        private boolean auth = true;
+        private boolean startTls = true;
+        private Duration connectionTimeout = Duration.ofSeconds(10);
+        private Duration timeout = Duration.ofSeconds(30);
+        private Pool pool = new Pool();
+    }
+
+    @Data
+    public static class Pool {
+        private int maxConnections = 4;
+        private int maxMessagesPerConnection = 100;
+        private Duration maxIdle = Duration.ofSeconds(60);  // idle connections are closed after this, servers drop them anyway
+        private Duration validateAfterIdle = Duration.ofSeconds(5);  // a connection idle longer is checked with NOOP before use
+        private Duration borrowTimeout = Duration.ofSeconds(30);
+    }
+}
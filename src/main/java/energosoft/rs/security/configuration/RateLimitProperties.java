@@ -0,0 +1,42 @@
+package energosoft.rs.security.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  rate-limit.* from application.yml, read by RateLimitFilter.
+ **/
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+    private int maxBuckets = 1 << 20;
+    private boolean trustForwardedFor = false;
+    private List<Route> routes = new ArrayList<>();
+
+    @Data
+    public static class Route {
+        private String name;
+        private List<String> paths = new ArrayList<>();  // Ant patterns, {variables} can name the target
+        private String targetField;  // path variable or JSON body field limited by perTarget
+        private Limit perIp;
+        private Limit perTarget;
+        private Limit perRoute;
+    }
+
+    @Data
+    public static class Limit {
+        private int capacity;
+        private Duration period = Duration.ofMinutes(1);
+    }
+}
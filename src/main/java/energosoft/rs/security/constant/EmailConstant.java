@@ -19,5 +19,12 @@ public class EmailConstant {
     public static final int DEFAULT_PORT = 465;
     public static final String SMTP_STARTTLS_ENABLE = "mail.smtp.starttls.enable";
     public static final String SMTP_STARTTLS_REQUIRED = "mail.smtp.starttls.required";
+    public static final String NEW_PASSWORD_TEMPLATE = "new-password";
+    public static final String WELCOME_TEMPLATE = "welcome";
+    public static final String ACCOUNT_LOCKED_TEMPLATE = "account-locked";
+    public static final String EMAIL_TEMPLATE_LOCATION = "templates/email/";
+    public static final String EMAIL_LAYOUT_TEMPLATE = "layout";
+    public static final String EMAIL_LAYOUT_BODY = "{{> body}}";
+    public static final String EMAIL_SUBJECT_PREFIX = "Subject:";
 
 }
@@ -6,20 +6,36 @@ package energosoft.rs.security.constant;
 
 public class SecurityConstant {
     public static final long EXPIRATION_TIME = 432_000_000; // 5 days expressed in milliseconds
+    public static final long ACCESS_TOKEN_EXPIRATION_TIME = 900_000; // 15 minutes expressed in milliseconds
+    public static final long REFRESH_TOKEN_EXPIRATION_TIME = EXPIRATION_TIME;
     public static final String TOKEN_PREFIX = "Bearer ";
     public static final String JWT_TOKEN_HEADER = "Jwt-Token";
+    public static final String REFRESH_TOKEN_HEADER = "Refresh-Token";
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+    public static final String INVALID_CURSOR = "List cursor is invalid or belongs to another sort";
+    public static final String INVALID_SORT = "Users cannot be sorted by ";
+    public static final String INVALID_FILTER = "Users cannot be filtered by ";
+    public static final String INVALID_REFRESH_TOKEN = "Refresh token is invalid or expired. Please log in again";
     public static final String TOKEN_CANNOT_BE_VERIFIED = "Token cannot be verified";
     public static final String GET_ARRAYS_LLC = "Energosoft ITSS";
     public static final String GET_ARRAYS_ADMINISTRATION = "User Management Portal";
     public static final String AUTHORITIES = "authorities";
+    public static final String AUTHORITY_MASK = "aut"; // compact bitmask over Authority.AUTHORITY_BITS
     public static final String FORBIDDEN_MESSAGE = "You need to log in to access this page";
     public static final String ACCESS_DENIED_MESSAGE = "You do not have permission to access this page";
     public static final String OPTIONS_HTTP_METHOD = "OPTIONS";
     public static final String USERNAME_ALREADY_EXISTS = "Username already exist";
     public static final String EMAIL_ALREADY_EXISTS = "Email already exist";
+    public static final String USERNAME_UNIQUE_INDEX = "ux_user_username";
+    public static final String EMAIL_UNIQUE_INDEX = "ux_user_email";
+    public static final String USER_ID_UNIQUE_INDEX = "ux_user_user_id";
     public static final String USER_NOT_FOUND_BY_USERNAME = "No user found by username ";
     public static final String NO_USER_FOUND_BY_EMAIL = "No user found for email: ";
+    public static final String PASSWORD_HASHING_BUSY = "Too many sign-in requests right now. Please try again shortly";
+    public static final String TOO_MANY_REQUESTS_MESSAGE = "Too many requests. Please try again later";
     public static final String USER_LOCKED = "User account is locked, contact support team for more information.";
-    public static final String[] PUBLIC_URLS = { "/user/login", "/user/register", "/user/image/**", "/h2-console/**" };
+    public static final String JWK_SET_URL = "/.well-known/jwks.json";
+    public static final String[] PUBLIC_URLS = { "/user/login", "/user/register", "/user/token/refresh", "/user/image/**", "/h2-console/**", JWK_SET_URL };
    // public static final String[] PUBLIC_URLS = { "**" };
 }
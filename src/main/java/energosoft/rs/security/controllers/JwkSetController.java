@@ -0,0 +1,31 @@
+package energosoft.rs.security.controllers;
+
+import energosoft.rs.security.utilty.JwtKeySet;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import static energosoft.rs.security.constant.SecurityConstant.JWK_SET_URL;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Publishes the public verification keys so edge services can validate tokens locally.
+ **/
+
+@RestController
+public class JwkSetController {
+
+    private JwtKeySet jwtKeySet;
+
+    @Autowired
+    public JwkSetController(JwtKeySet jwtKeySet) {
+        this.jwtKeySet = jwtKeySet;
+    }
+
+    @GetMapping(path = JWK_SET_URL, produces = MediaType.APPLICATION_JSON_VALUE)
+    public String getJwkSet() {
+        return jwtKeySet.getJwkSetJson();
+    }
+}
@@ -1,20 +1,35 @@
 package energosoft.rs.security.controllers;
 
 
+import energosoft.rs.security.domain.BulkJob;
+import energosoft.rs.security.domain.TokenPair;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import energosoft.rs.security.domain.User;
+import energosoft.rs.security.domain.UserCursor;
 import energosoft.rs.security.domain.UserPrincipal;
+import energosoft.rs.security.enumeration.Role;
+import energosoft.rs.security.enumeration.UserSortField;
 import energosoft.rs.security.exception.ExceptionHandling;
+import energosoft.rs.security.exception.domain.BulkJobNotFoundException;
 import energosoft.rs.security.exception.domain.EmailExistException;
 import energosoft.rs.security.exception.domain.EmailNotFoundException;
+import energosoft.rs.security.exception.domain.InvalidPageRequestException;
+import energosoft.rs.security.exception.domain.InvalidRefreshTokenException;
 import energosoft.rs.security.exception.domain.UserNotFoundException;
 import energosoft.rs.security.exception.domain.UsernameExistException;
+import energosoft.rs.security.service.BulkPasswordResetService;
+import energosoft.rs.security.service.RefreshTokenService;
 import energosoft.rs.security.service.UserService;
+import energosoft.rs.security.ui.request.BulkPasswordResetRequestModel;
 import energosoft.rs.security.ui.request.UserRequestModel;
 import energosoft.rs.security.ui.response.HttpResponse;
-import energosoft.rs.security.utilty.JWTTokenProvider;
+import energosoft.rs.security.ui.response.UserResponse;
+import energosoft.rs.security.utilty.AuthorityMask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -26,19 +41,23 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import javax.mail.MessagingException;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.List;
 
 import static energosoft.rs.security.constant.FileConstant.*;
-import static energosoft.rs.security.constant.SecurityConstant.JWT_TOKEN_HEADER;
+import static energosoft.rs.security.constant.SecurityConstant.*;
 import static org.springframework.http.HttpStatus.*;
 
 /**
@@ -53,17 +72,34 @@ public class UserController   extends ExceptionHandling {
 
     private UserService userService;
     private AuthenticationManager authenticationManager;
-    private JWTTokenProvider jwtTokenProvider;
+    private RefreshTokenService refreshTokenService;
+    private BulkPasswordResetService bulkPasswordResetService;
+    private ObjectWriter userWriter;
+    private int defaultPageSize;
+    private int maxPageSize;
+    private int defaultSearchLimit;
+    private int maxSearchLimit;
 
     @Autowired
-    public UserController(UserService userService, AuthenticationManager authenticationManager, JWTTokenProvider jwtTokenProvider) {
+    public UserController(UserService userService, AuthenticationManager authenticationManager, RefreshTokenService refreshTokenService,
+                          BulkPasswordResetService bulkPasswordResetService, ObjectMapper objectMapper,
+                          @Value("${user.list.default-page-size:100}") int defaultPageSize,
+                          @Value("${user.list.max-page-size:1000}") int maxPageSize,
+                          @Value("${user.search.default-limit:20}") int defaultSearchLimit,
+                          @Value("${user.search.max-limit:100}") int maxSearchLimit) {
         this.userService = userService;
         this.authenticationManager = authenticationManager;
-        this.jwtTokenProvider = jwtTokenProvider;
+        this.refreshTokenService = refreshTokenService;
+        this.bulkPasswordResetService = bulkPasswordResetService;
+        this.userWriter = objectMapper.writerFor(UserResponse.class);
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.defaultSearchLimit = defaultSearchLimit;
+        this.maxSearchLimit = maxSearchLimit;
     }
 
     @PostMapping ("/register")
-    public ResponseEntity<User> register(@RequestBody User user) throws UserNotFoundException, UsernameExistException, EmailExistException, MessagingException {
+    public ResponseEntity<User> register(@RequestBody User user) throws UserNotFoundException, UsernameExistException, EmailExistException {
         User newUser = userService.register(user.getFirstName(), user.getLastName(), user.getUsername(), user.getEmail());
     return  new ResponseEntity<>(newUser, OK);
     }
@@ -73,11 +109,18 @@ public class UserController   extends ExceptionHandling {
         authenticate(user.getUsername(), user.getPassword());
         User loginUser = userService.findUserByUsername(user.getUsername());
         UserPrincipal userPrincipal = new UserPrincipal(loginUser);
-        HttpHeaders jwtHeader = getJwtHeader(userPrincipal);
-        LOGGER.info("Generated JWTToken: " + jwtTokenProvider.generateJwtToken(userPrincipal));
+        HttpHeaders jwtHeader = getJwtHeader(refreshTokenService.issue(userPrincipal));
+        LOGGER.info("Generated JWTToken for user: " + userPrincipal.getUsername());
         return  new ResponseEntity<>(loginUser, jwtHeader, OK );
     }
 
+    @PostMapping("/token/refresh")
+    public ResponseEntity<HttpResponse> refreshToken(@RequestHeader(value = REFRESH_TOKEN_HEADER, required = false) String refreshToken) throws InvalidRefreshTokenException {
+        HttpHeaders jwtHeader = getJwtHeader(refreshTokenService.refresh(refreshToken));
+        return new ResponseEntity<>(new HttpResponse(OK.value(), OK, OK.getReasonPhrase().toUpperCase(),
+                "Token refreshed successfully"), jwtHeader, OK);
+    }
+
     @PostMapping("/add")
     public ResponseEntity<User> addNewUser(@RequestParam("firstName") String firstName,
                                            @RequestParam("lastName") String lastName,
@@ -119,23 +162,97 @@ public class UserController   extends ExceptionHandling {
     }
 
     @GetMapping("/find/{username}")
-    public ResponseEntity<User> getUser(@PathVariable String username) {
-        User foundUser = userService.findUserByUsername(username);
+    public ResponseEntity<UserResponse> getUser(@PathVariable String username) {
+        UserResponse foundUser = userService.getUser(username);
         return new ResponseEntity<>(foundUser, OK);
     }
 
+    /**
+     * One page of users, optionally only those with a role and/or an authority; X-Next-Cursor carries the position
+     * for the next page and is absent on the last one.
+     */
     @GetMapping("/list")
-    public ResponseEntity<List<User>> getAllUsers() {
-        List<User> users = userService.getUsers();
-        return new ResponseEntity<>(users, OK);
+    public ResponseEntity<List<UserResponse>> getAllUsers(@RequestParam(value = "cursor", required = false) String cursor,
+                                                          @RequestParam(value = "sort", defaultValue = "id") String sort,
+                                                          @RequestParam(value = "direction", defaultValue = "asc") String direction,
+                                                          @RequestParam(value = "role", required = false) String role,
+                                                          @RequestParam(value = "authority", required = false) String authority,
+                                                          @RequestParam(value = "size", required = false) Integer size) throws InvalidPageRequestException {
+        UserSortField sortField = sortField(sort);
+        Role roleFilter = role == null ? null : roleFilter(role);
+        if (authority != null && AuthorityMask.masksWith(authority).isEmpty()) {
+            throw new InvalidPageRequestException(INVALID_FILTER + authority);
+        }
+        boolean descending = descending(direction);
+        UserCursor after = cursor == null ? null : UserCursor.decode(cursor);
+        if (after != null && (after.getSort() != sortField || after.isDescending() != descending)) {
+            throw new InvalidPageRequestException(INVALID_CURSOR);
+        }
+        int pageSize = size == null ? defaultPageSize : Math.max(1, Math.min(size, maxPageSize));
+        List<UserResponse> users = userService.getUsers(sortField, descending, after, roleFilter, authority, pageSize);
+        HttpHeaders headers = new HttpHeaders();
+        if (users.size() == pageSize) {
+            headers.add(NEXT_CURSOR_HEADER, UserCursor.after(users.get(users.size() - 1), sortField, descending).encode());
+        }
+        return new ResponseEntity<>(users, headers, OK);
+    }
+
+    /** Every user as newline-delimited JSON, written while the rows are read. */
+    @GetMapping(path = "/list/stream", produces = NDJSON_MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> streamAllUsers(@RequestParam(value = "sort", defaultValue = "id") String sort,
+                                                                @RequestParam(value = "direction", defaultValue = "asc") String direction) throws InvalidPageRequestException {
+        UserSortField sortField = sortField(sort);
+        boolean descending = descending(direction);
+        StreamingResponseBody body = outputStream -> {
+            OutputStream buffered = new BufferedOutputStream(outputStream, 64 * 1024);
+            try {
+                userService.streamUsers(sortField, descending, user -> {
+                    try {
+                        buffered.write(userWriter.writeValueAsBytes(user));
+                        buffered.write('\n');
+                    } catch (IOException exception) {
+                        throw new UncheckedIOException(exception);
+                    }
+                });
+            } catch (UncheckedIOException exception) {
+                throw exception.getCause();
+            }
+            buffered.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON_MEDIA_TYPE)).body(body);
+    }
+
+    /** Users whose username, email, first or last name starts with q, ignoring case. */
+    @GetMapping("/search")
+    public ResponseEntity<List<UserResponse>> searchUsers(@RequestParam("q") String query,
+                                                          @RequestParam(value = "limit", required = false) Integer limit) {
+        if (query.trim().isEmpty()) {
+            return new ResponseEntity<>(Collections.emptyList(), OK);
+        }
+        int searchLimit = limit == null ? defaultSearchLimit : Math.max(1, Math.min(limit, maxSearchLimit));
+        return new ResponseEntity<>(userService.searchUsers(query.trim(), searchLimit), OK);
     }
 
     @GetMapping("/resetPassword/{email}")
-    public ResponseEntity<HttpResponse> resetPassword(@PathVariable String email) throws EmailNotFoundException, MessagingException {
+    public ResponseEntity<HttpResponse> resetPassword(@PathVariable String email) throws EmailNotFoundException {
         userService.resetPassword(email);
         return response(OK, "An email whit a new password was send to: " + email);
     }
 
+    @PostMapping("/bulk/resetPassword")
+    @PreAuthorize("hasAnyAuthority('user:delete')")
+    public ResponseEntity<BulkJob> bulkResetPassword(@RequestBody BulkPasswordResetRequestModel requestModel) throws InvalidPageRequestException {
+        String role = requestModel.getRole() == null ? null : roleFilter(requestModel.getRole()).name();
+        BulkJob job = bulkPasswordResetService.start(role, requestModel.getLocked(), requestModel.isSendEmail());
+        return new ResponseEntity<>(job, ACCEPTED);
+    }
+
+    @GetMapping("/bulk/{jobId}")
+    @PreAuthorize("hasAnyAuthority('user:delete')")
+    public ResponseEntity<BulkJob> getBulkJob(@PathVariable String jobId) throws BulkJobNotFoundException {
+        return new ResponseEntity<>(bulkPasswordResetService.getJob(jobId), OK);
+    }
+
     @DeleteMapping("/delete/{username}")
     @PreAuthorize("hasAnyAuthority('user:delete')")
     public ResponseEntity<HttpResponse> deleteUser(@PathVariable String username) {
@@ -169,9 +286,35 @@ public class UserController   extends ExceptionHandling {
         return response(OK, "Password changed successfully");
     }
 
-    private HttpHeaders getJwtHeader(UserPrincipal userPrincipal) {
+    private UserSortField sortField(String sort) throws InvalidPageRequestException {
+        UserSortField sortField = UserSortField.fromProperty(sort);
+        if (sortField == null) {
+            throw new InvalidPageRequestException(INVALID_SORT + sort);
+        }
+        return sortField;
+    }
+
+    private Role roleFilter(String role) throws InvalidPageRequestException {
+        try {
+            return Role.valueOf(role.toUpperCase());
+        } catch (IllegalArgumentException exception) {
+            throw new InvalidPageRequestException(INVALID_FILTER + role);
+        }
+    }
+
+    private boolean descending(String direction) throws InvalidPageRequestException {
+        if (!direction.equalsIgnoreCase("asc") && !direction.equalsIgnoreCase("desc")) {
+            throw new InvalidPageRequestException(INVALID_SORT + direction);
+        }
+        return direction.equalsIgnoreCase("desc");
+    }
+
+    private HttpHeaders getJwtHeader(TokenPair tokenPair) {
         HttpHeaders headers = new HttpHeaders();
-        headers.add(JWT_TOKEN_HEADER, jwtTokenProvider.generateJwtToken(userPrincipal));
+        headers.add(JWT_TOKEN_HEADER, tokenPair.getAccessToken());
+        if (tokenPair.getRefreshToken() != null) {
+            headers.add(REFRESH_TOKEN_HEADER, tokenPair.getRefreshToken());
+        }
         return headers;
     }
 
@@ -0,0 +1,31 @@
+package energosoft.rs.security.domain;
+
+import energosoft.rs.security.enumeration.BulkJobStatus;
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Progress of a bulk password reset as reported by GET /user/bulk/{jobId}. Kept in memory by
+ *  BulkPasswordResetService and written only by the job's own thread.
+ **/
+
+@Data
+public class BulkJob {
+
+    private String id;
+    private String role;
+    private Boolean locked;
+    private boolean sendEmail;
+    private volatile BulkJobStatus status;
+    private volatile long total;
+    private volatile long processed;
+    private volatile long failed;
+    private volatile double usersPerSecond;
+    private volatile Date startedAt;
+    private volatile Date finishedAt;
+    private volatile String error;
+
+}
@@ -0,0 +1,46 @@
+package energosoft.rs.security.domain;
+
+import energosoft.rs.security.enumeration.EmailOutboxStatus;
+import lombok.Data;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  An email waiting for delivery, written in the same transaction as the change that triggers it. The template
+ *  name and its model (JSON, encrypted with EmailModelCipher) are stored rather than the rendered message. A
+ *  delivered row is deleted, a row that ran out of attempts stays as DEAD, without its model, until dead-retention
+ *  has passed.
+ **/
+
+@Data
+@Entity
+@Table(name = "email_outbox", indexes = @Index(name = "ix_email_outbox_due", columnList = "status, nextAttemptAt"))
+public class EmailOutbox implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    @Column(nullable = false, updatable = false)
+    private Long id;
+    @Column(nullable = false, length = 64)
+    private String template;
+    @Column(nullable = false)
+    private String recipient;
+    @Column(length = 4000)
+    private String model;
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private EmailOutboxStatus status;
+    private int attempts;
+    @Column(nullable = false)
+    private Date nextAttemptAt;
+    @Column(length = 1000)
+    private String lastError;
+    private Date createdAt;
+
+}
@@ -0,0 +1,30 @@
+package energosoft.rs.security.domain;
+
+import lombok.Data;
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Failed login counters shared by all nodes when login.attempts.store is jdbc. The key is a SipHash of the
+ *  username and the counts are the two buckets of the sliding window, so a row is 20 bytes of payload.
+ *  Written only by JdbcLoginAttemptStore through batched upserts.
+ **/
+
+@Data
+@Entity
+@Table(name = "login_attempt", indexes = @Index(name = "ix_login_attempt_window", columnList = "windowIndex"))
+public class LoginAttempt implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(nullable = false, updatable = false)
+    private Long userKey;
+    private int windowIndex;
+    private int previousCount;
+    private int currentCount;
+
+}
@@ -0,0 +1,42 @@
+package energosoft.rs.security.domain;
+
+import lombok.Data;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  One row per login session. Only SHA-256 hashes of refresh tokens are stored; rotation moves the current hash to
+ *  previousTokenHash so a replayed token is recognised and the whole session can be revoked.
+ **/
+
+@Data
+@Entity
+@Table(name = "refresh_token", indexes = {
+        @Index(name = "ux_refresh_token_hash", columnList = "tokenHash", unique = true),
+        @Index(name = "ix_refresh_token_previous_hash", columnList = "previousTokenHash"),
+        @Index(name = "ix_refresh_token_username", columnList = "username")
+})
+public class RefreshToken implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    @Column(nullable = false, updatable = false)
+    private Long id;
+    @Column(nullable = false, length = 64)
+    private String tokenHash;
+    @Column(length = 64)
+    private String previousTokenHash;
+    @Column(nullable = false)
+    private String username;
+    private int authorityMask;
+    private Date createdAt;
+    private Date rotatedAt;
+    private Date expiresAt;
+
+}
@@ -0,0 +1,17 @@
+package energosoft.rs.security.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ *  @Author: Veljko Siracki
+ **/
+
+@Data
+@AllArgsConstructor
+public class TokenPair {
+
+    private String accessToken;
+    private String refreshToken;
+
+}
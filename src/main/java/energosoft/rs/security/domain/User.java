@@ -1,31 +1,53 @@
 package energosoft.rs.security.domain;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import energosoft.rs.security.utilty.AuthorityMaskConverter;
+import energosoft.rs.security.utilty.RoleConverter;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 import javax.persistence.*;
 import java.io.Serializable;
 import java.util.Date;
 
+import static energosoft.rs.security.constant.SecurityConstant.EMAIL_UNIQUE_INDEX;
+import static energosoft.rs.security.constant.SecurityConstant.USER_ID_UNIQUE_INDEX;
+import static energosoft.rs.security.constant.SecurityConstant.USERNAME_UNIQUE_INDEX;
+
 /**
  *  @Author: Veljko Siracki
+ *
+ *  Ids come from user_seq through Hibernate's pooled optimizer, one sequence call per 50 inserts. The entity and
+ *  its username natural id are second-level cacheable; the caches only apply when spring.jpa.properties.hibernate
+ *  .cache.use_second_level_cache is switched on with a region factory on the classpath.
  **/
 
 @Data
 @Entity
-@Table(name = "`User`")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@NaturalIdCache
+@Table(name = "`User`", indexes = { @Index(name = "ix_user_join_date", columnList = "joinDate, id"),
+        @Index(name = "ix_user_role", columnList = "role_id, id"), @Index(name = "ix_user_authority_mask", columnList = "authority_mask, id") },
+        uniqueConstraints = { @UniqueConstraint(name = USERNAME_UNIQUE_INDEX, columnNames = "username"),
+                @UniqueConstraint(name = EMAIL_UNIQUE_INDEX, columnNames = "email"),
+                @UniqueConstraint(name = USER_ID_UNIQUE_INDEX, columnNames = "userId") })
 public class User implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_seq")
+    @SequenceGenerator(name = "user_seq", sequenceName = "user_seq", allocationSize = 50)
     @Column(nullable = false, updatable = false)
     @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     private Long id;
     private String userId;
     private String firstName;
     private String lastName;
+    @NaturalId(mutable = true)
     private String username;
     @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     private String password;
@@ -34,7 +56,11 @@ public class User implements Serializable {
     private Date lastLoginDate;
     private Date lastLoginDateDisplay;
     private Date joinDate;
+    @Convert(converter = RoleConverter.class)
+    @Column(name = "role_id")
     private String role; // ROLE_USER {read, write }, ROLE_ADMIN
+    @Convert(converter = AuthorityMaskConverter.class)
+    @Column(name = "authority_mask")
     private String[] authorities;
     private boolean isActive;
     private boolean isNotLocked;
@@ -0,0 +1,61 @@
+package energosoft.rs.security.domain;
+
+import energosoft.rs.security.enumeration.UserSortField;
+import energosoft.rs.security.exception.domain.InvalidPageRequestException;
+import energosoft.rs.security.ui.response.UserResponse;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+import static energosoft.rs.security.constant.SecurityConstant.INVALID_CURSOR;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Position after the last user of a /user/list page: the sort it belongs to, that user's id and sort value.
+ *  Travels as the opaque X-Next-Cursor header, a URL-safe Base64 of "sort:direction:id:value".
+ **/
+
+@Data
+public class UserCursor {
+
+    private static final char SEPARATOR = ':';
+
+    private final UserSortField sort;
+    private final boolean descending;
+    private final long id;
+    private final Object value;  // String, or Date for JOIN_DATE; null for ID
+
+    public static UserCursor after(UserResponse user, UserSortField sort, boolean descending) {
+        Object value;
+        switch (sort) {
+            case USERNAME: value = user.getUsername(); break;
+            case EMAIL: value = user.getEmail(); break;
+            case JOIN_DATE: value = user.getJoinDate(); break;
+            default: value = null;
+        }
+        return new UserCursor(sort, descending, user.getId(), value);
+    }
+
+    public String encode() {
+        String value = this.value instanceof Date ? String.valueOf(((Date) this.value).getTime())
+                : this.value == null ? "" : this.value.toString();
+        String cursor = sort.name() + SEPARATOR + (descending ? 'd' : 'a') + SEPARATOR + id + SEPARATOR + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static UserCursor decode(String cursor) throws InvalidPageRequestException {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":", 4);
+            UserSortField sort = UserSortField.valueOf(parts[0]);
+            long id = Long.parseLong(parts[2]);
+            Object value = sort == UserSortField.ID ? null
+                    : sort == UserSortField.JOIN_DATE ? new Date(Long.parseLong(parts[3])) : parts[3];
+            return new UserCursor(sort, "d".equals(parts[1]), id, value);
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException exception) {
+            throw new InvalidPageRequestException(INVALID_CURSOR);
+        }
+    }
+}
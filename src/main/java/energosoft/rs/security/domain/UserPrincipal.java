@@ -1,13 +1,10 @@
 package energosoft.rs.security.domain;
 
+import energosoft.rs.security.utilty.AuthorityMask;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import java.util.Collection;
-import java.util.stream.Collectors;
-
-import static java.util.Arrays.stream;
 
 /**
  *  @Author: Veljko Siracki
@@ -23,7 +20,7 @@ public class UserPrincipal implements UserDetails {
 
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
-        return stream(this.user.getAuthorities()).map(SimpleGrantedAuthority::new).collect(Collectors.toList());
+        return AuthorityMask.toGrantedAuthorities(this.user.getAuthorities());
     }
 
     @Override
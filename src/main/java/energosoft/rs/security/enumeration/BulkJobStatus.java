@@ -0,0 +1,14 @@
+package energosoft.rs.security.enumeration;
+
+/**
+ *  @Author: Veljko Siracki
+ **/
+
+public enum BulkJobStatus {
+
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED
+
+}
@@ -0,0 +1,12 @@
+package energosoft.rs.security.enumeration;
+
+/**
+ *  @Author: Veljko Siracki
+ **/
+
+public enum EmailOutboxStatus {
+
+    PENDING,
+    DEAD
+
+}
@@ -1,11 +1,17 @@
 package energosoft.rs.security.enumeration;
 
+import energosoft.rs.security.utilty.AuthorityMask;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.List;
+
 import static energosoft.rs.security.constant.Authority.*;
 
 /**
  *  @Author: Veljko Siracki
  **/
 
+// the ordinal is stored as User's role_id (see RoleConverter): append new roles, never reorder or remove them
 public enum Role {
 
     ROLE_USER(USER_AUTHORITIES),
@@ -15,12 +21,24 @@ public enum Role {
     ROLE_SUPER_ADMIN(SUPER_ADMIN_AUTHORITIES);
 
     private String[] authorities;
+    private int authorityMask;
+    private List<GrantedAuthority> grantedAuthorities;
 
     Role(String... authorities){
         this.authorities = authorities;
+        this.authorityMask = AuthorityMask.encode(authorities);
+        this.grantedAuthorities = AuthorityMask.toGrantedAuthorities(authorityMask);
     }
 
     public String[] getAuthorities() {
         return authorities;
     }
+
+    public int getAuthorityMask() {
+        return authorityMask;
+    }
+
+    public List<GrantedAuthority> getGrantedAuthorities() {
+        return grantedAuthorities;
+    }
 }
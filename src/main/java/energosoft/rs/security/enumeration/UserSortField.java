@@ -0,0 +1,36 @@
+package energosoft.rs.security.enumeration;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Columns /user/list can be sorted by. Every sort is followed by the id, so the order is total and a page cursor
+ *  can continue right after the last user of the previous page.
+ **/
+
+public enum UserSortField {
+
+    ID("id"),
+    USERNAME("username"),
+    EMAIL("email"),
+    JOIN_DATE("joinDate");
+
+    private final String property;
+
+    UserSortField(String property) {
+        this.property = property;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    /** The field with the given entity property name, e.g. joinDate, or null. */
+    public static UserSortField fromProperty(String property) {
+        for (UserSortField field : values()) {
+            if (field.property.equalsIgnoreCase(property)) {
+                return field;
+            }
+        }
+        return null;
+    }
+}
@@ -6,6 +6,7 @@ import energosoft.rs.security.ui.response.HttpResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.web.servlet.error.ErrorController;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -68,6 +69,18 @@ public class ExceptionHandling implements ErrorController  {
         return createHttpResponse(UNAUTHORIZED, exception.getMessage());
     }
 
+    @ExceptionHandler(InvalidRefreshTokenException.class)
+    public ResponseEntity<HttpResponse> invalidRefreshTokenException(InvalidRefreshTokenException exception) {
+        return createHttpResponse(UNAUTHORIZED, exception.getMessage());
+    }
+
+    @ExceptionHandler(PasswordHashingRejectedException.class)
+    public ResponseEntity<HttpResponse> passwordHashingRejectedException(PasswordHashingRejectedException exception) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(exception.getRetryAfterSeconds()));
+        return createHttpResponse(SERVICE_UNAVAILABLE, exception.getMessage(), headers);
+    }
+
     @ExceptionHandler(EmailExistException.class)
     public ResponseEntity<HttpResponse> emailExistException(EmailExistException exception) {
         return createHttpResponse(BAD_REQUEST, exception.getMessage());
@@ -83,6 +96,16 @@ public class ExceptionHandling implements ErrorController  {
         return createHttpResponse(BAD_REQUEST, exception.getMessage());
     }
 
+    @ExceptionHandler(BulkJobNotFoundException.class)
+    public ResponseEntity<HttpResponse> bulkJobNotFoundException(BulkJobNotFoundException exception) {
+        return createHttpResponse(BAD_REQUEST, exception.getMessage());
+    }
+
+    @ExceptionHandler(InvalidPageRequestException.class)
+    public ResponseEntity<HttpResponse> invalidPageRequestException(InvalidPageRequestException exception) {
+        return createHttpResponse(BAD_REQUEST, exception.getMessage());
+    }
+
     @ExceptionHandler(UserNotFoundException.class)
     public ResponseEntity<HttpResponse> userNotFoundException(UserNotFoundException exception) {
         return createHttpResponse(BAD_REQUEST, exception.getMessage());
@@ -124,8 +147,12 @@ public class ExceptionHandling implements ErrorController  {
     }
 
     private ResponseEntity<HttpResponse> createHttpResponse(HttpStatus httpStatus, String message) {
+        return createHttpResponse(httpStatus, message, new HttpHeaders());
+    }
+
+    private ResponseEntity<HttpResponse> createHttpResponse(HttpStatus httpStatus, String message, HttpHeaders headers) {
         return new ResponseEntity<>(new HttpResponse(httpStatus.value(), httpStatus,
-                httpStatus.getReasonPhrase().toUpperCase(), message), httpStatus);
+                httpStatus.getReasonPhrase().toUpperCase(), message), headers, httpStatus);
     }
 
     @RequestMapping(ERROR_PATH)
@@ -0,0 +1,15 @@
+package energosoft.rs.security.exception.domain;
+
+/**
+ *  @Author: Veljko Siracki
+ **/
+
+public class BulkJobNotFoundException extends Exception {
+
+
+    public BulkJobNotFoundException(String message) {
+        super(message);
+    }
+
+
+}
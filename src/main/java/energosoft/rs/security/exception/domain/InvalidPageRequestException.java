@@ -0,0 +1,15 @@
+package energosoft.rs.security.exception.domain;
+
+/**
+ *  @Author: Veljko Siracki
+ **/
+
+public class InvalidPageRequestException extends Exception {
+
+
+    public InvalidPageRequestException(String message) {
+        super(message);
+    }
+
+
+}
@@ -0,0 +1,12 @@
+package energosoft.rs.security.exception.domain;
+
+/**
+ *  @Author: Veljko Siracki
+ **/
+
+public class InvalidRefreshTokenException extends Exception {
+
+    public InvalidRefreshTokenException(String message) {
+        super(message);
+    }
+}
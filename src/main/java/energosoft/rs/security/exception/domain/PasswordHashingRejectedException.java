@@ -0,0 +1,22 @@
+package energosoft.rs.security.exception.domain;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Thrown when the password hashing queue is full. Unchecked, since it leaves through PasswordEncoder and the
+ *  AuthenticationManager, neither of which declare checked exceptions.
+ **/
+
+public class PasswordHashingRejectedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public PasswordHashingRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
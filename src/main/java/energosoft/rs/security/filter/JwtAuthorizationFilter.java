@@ -1,10 +1,14 @@
 package energosoft.rs.security.filter;
 
 
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import energosoft.rs.security.service.TokenRevocationService;
 import energosoft.rs.security.utilty.JWTTokenProvider;
+import energosoft.rs.security.utilty.VerifiedToken;
+import energosoft.rs.security.utilty.VerifiedTokenCache;
 
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -14,7 +18,6 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.List;
 
 import static energosoft.rs.security.constant.SecurityConstant.*;
 import static org.springframework.http.HttpHeaders.AUTHORIZATION;
@@ -29,9 +32,14 @@ public class JwtAuthorizationFilter extends OncePerRequestFilter {
 
 
     private JWTTokenProvider jwtTokenProvider;
+    private VerifiedTokenCache verifiedTokenCache;
+    private TokenRevocationService tokenRevocationService;
 
-    public JwtAuthorizationFilter(JWTTokenProvider jwtTokenProvider) {
+    public JwtAuthorizationFilter(JWTTokenProvider jwtTokenProvider, VerifiedTokenCache verifiedTokenCache,
+                                  TokenRevocationService tokenRevocationService) {
         this.jwtTokenProvider = jwtTokenProvider;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.tokenRevocationService = tokenRevocationService;
     }
 
 
@@ -46,10 +54,11 @@ public class JwtAuthorizationFilter extends OncePerRequestFilter {
                 return;
             }
             String token = authorizationHeader.substring(TOKEN_PREFIX.length());
-            String username = jwtTokenProvider.getSubject(token);
-            if (jwtTokenProvider.isTokenValid(username, token) && SecurityContextHolder.getContext().getAuthentication() == null) {
-                List<GrantedAuthority> authorities = jwtTokenProvider.getAuthorities(token);
-                Authentication authentication = jwtTokenProvider.getAuthentication(username, authorities, request);
+            VerifiedToken verifiedToken = verify(token);
+            if (verifiedToken != null && StringUtils.isNotEmpty(verifiedToken.getSubject())
+                    && SecurityContextHolder.getContext().getAuthentication() == null) {
+                Authentication authentication = jwtTokenProvider.getAuthentication(verifiedToken.getSubject(),
+                        verifiedToken.getAuthorities(), request);
                 SecurityContextHolder.getContext().setAuthentication(authentication);
             } else {
                 SecurityContextHolder.clearContext();
@@ -58,4 +67,13 @@ public class JwtAuthorizationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    private VerifiedToken verify(String token) {
+        try {
+            VerifiedToken verifiedToken = verifiedTokenCache.resolve(token);
+            return tokenRevocationService.isRevoked(verifiedToken) ? null : verifiedToken;
+        } catch (JWTVerificationException exception) {
+            return null;
+        }
+    }
+
 }
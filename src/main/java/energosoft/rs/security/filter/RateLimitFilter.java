@@ -0,0 +1,208 @@
+package energosoft.rs.security.filter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import energosoft.rs.security.configuration.RateLimitProperties;
+import energosoft.rs.security.configuration.RateLimitProperties.Limit;
+import energosoft.rs.security.configuration.RateLimitProperties.Route;
+import energosoft.rs.security.ui.response.HttpResponse;
+import energosoft.rs.security.utilty.RateLimiter;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import static energosoft.rs.security.constant.SecurityConstant.OPTIONS_HTTP_METHOD;
+import static energosoft.rs.security.constant.SecurityConstant.TOO_MANY_REQUESTS_MESSAGE;
+import static org.springframework.http.HttpHeaders.RETRY_AFTER;
+import static org.springframework.http.HttpStatus.TOO_MANY_REQUESTS;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Token-bucket limits in front of the endpoints that cost BCrypt or SMTP work: per client IP, per target
+ *  username/email and per route, configured under rate-limit.routes. Runs before JwtAuthorizationFilter and
+ *  answers 429 with Retry-After without touching the database.
+ *
+ *  Each kind of key has its own table. Client IPs share buckets when their table is full. Targets never share,
+ *  so a flood of other usernames cannot throttle a user. Route buckets sit in a small table of their own, so a
+ *  route-wide limit is never tied to one client's bucket.
+ **/
+
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final String FORWARDED_FOR_HEADER = "X-Forwarded-For";
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private RateLimitProperties rateLimitProperties;
+    private RateLimiter ipLimiter;
+    private RateLimiter targetLimiter;
+    private RateLimiter routeLimiter;
+
+    @Autowired
+    public RateLimitFilter(RateLimitProperties rateLimitProperties) {
+        this.rateLimitProperties = rateLimitProperties;
+        this.ipLimiter = new RateLimiter(rateLimitProperties.getMaxBuckets());
+        this.targetLimiter = new RateLimiter(rateLimitProperties.getMaxBuckets(), false);
+        this.routeLimiter = new RateLimiter(Math.max(64, rateLimitProperties.getRoutes().size() * 64), false);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        if (!rateLimitProperties.isEnabled() || request.getMethod().equalsIgnoreCase(OPTIONS_HTTP_METHOD)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        String path = urlPathHelper.getPathWithinApplication(request);
+        for (Route route : rateLimitProperties.getRoutes()) {
+            for (String pattern : route.getPaths()) {
+                if (pathMatcher.match(pattern, path)) {
+                    limit(route, pattern, path, request, response, filterChain);
+                    return;
+                }
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private void limit(Route route, String pattern, String path, HttpServletRequest request, HttpServletResponse response,
+                       FilterChain filterChain) throws ServletException, IOException {
+        long now = System.currentTimeMillis();
+        String name = route.getName() != null ? route.getName() : pattern;
+        long waitMillis = acquire(ipLimiter, name + ':' + clientIp(request), route.getPerIp(), now);
+        if (waitMillis == 0 && route.getPerTarget() != null && route.getTargetField() != null) {
+            String target = pathMatcher.extractUriTemplateVariables(pattern, path).get(route.getTargetField());
+            if (target == null && request.getContentType() != null && request.getContentType().contains("json")) {
+                CachedBodyRequest cachedBodyRequest = new CachedBodyRequest(request);
+                request = cachedBodyRequest;
+                target = cachedBodyRequest.jsonField(route.getTargetField());
+            }
+            if (StringUtils.isNotEmpty(target)) {
+                waitMillis = acquire(targetLimiter, name + ':' + target.toLowerCase(Locale.ROOT), route.getPerTarget(), now);
+            }
+        }
+        if (waitMillis == 0) {
+            waitMillis = acquire(routeLimiter, name, route.getPerRoute(), now);
+        }
+        if (waitMillis > 0) {
+            tooManyRequests(response, waitMillis);
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private long acquire(RateLimiter rateLimiter, String key, Limit limit, long now) {
+        if (limit == null || limit.getCapacity() <= 0) {
+            return 0;
+        }
+        return rateLimiter.tryAcquire(key, limit.getCapacity(), limit.getPeriod().toMillis(), now);
+    }
+
+    private String clientIp(HttpServletRequest request) {
+        if (rateLimitProperties.isTrustForwardedFor()) {
+            String forwardedFor = request.getHeader(FORWARDED_FOR_HEADER);
+            if (StringUtils.isNotBlank(forwardedFor)) {
+                return StringUtils.substringBefore(forwardedFor, ",").trim();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private void tooManyRequests(HttpServletResponse response, long waitMillis) throws IOException {
+        HttpResponse httpResponse = new HttpResponse(TOO_MANY_REQUESTS.value(), TOO_MANY_REQUESTS,
+                TOO_MANY_REQUESTS.getReasonPhrase().toUpperCase(), TOO_MANY_REQUESTS_MESSAGE);
+        response.setContentType(APPLICATION_JSON_VALUE);
+        response.setStatus(TOO_MANY_REQUESTS.value());
+        response.setHeader(RETRY_AFTER, String.valueOf((waitMillis + 999) / 1000));
+        OutputStream outputStream = response.getOutputStream();
+        objectMapper.writeValue(outputStream, httpResponse);
+        outputStream.flush();
+    }
+
+    /** Reads the body once so the target can be taken from it, then replays it to the rest of the chain. */
+    private final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        private CachedBodyRequest(HttpServletRequest request) throws IOException {
+            super(request);
+            this.body = StreamUtils.copyToByteArray(request.getInputStream());
+        }
+
+        private String jsonField(String field) {
+            try {
+                JsonNode value = objectMapper.readTree(body).get(field);
+                return value != null && value.isTextual() ? value.asText() : null;
+            } catch (IOException exception) {
+                return null;
+            }
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream inputStream = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return inputStream.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // the whole body is already in memory, so it is available, and all read, right away
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    try {
+                        readListener.onDataAvailable();
+                        readListener.onAllDataRead();
+                    } catch (IOException exception) {
+                        readListener.onError(exception);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return inputStream.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return inputStream.read(buffer, offset, length);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                    encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package energosoft.rs.security.listener;
+
+import energosoft.rs.security.repository.UserRepository;
+import energosoft.rs.security.utilty.UserIdGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Seeds UserIdGenerator with the newest stored userId once the schema is up. Ids already issued are then never
+ *  reissued after a restart, even when the clock stepped back or ids were borrowed from future milliseconds.
+ **/
+
+@Component
+public class UserIdSeedListener {
+
+    private static final long SEED_HORIZON_MILLIS = 24 * 60 * 60 * 1000L;  // clock skew between nodes, and borrowed ids
+
+    private Logger LOGGER = LoggerFactory.getLogger(getClass());
+    private UserRepository userRepository;
+    private UserIdGenerator userIdGenerator;
+
+    @Autowired
+    public UserIdSeedListener(UserRepository userRepository, UserIdGenerator userIdGenerator) {
+        this.userRepository = userRepository;
+        this.userIdGenerator = userIdGenerator;
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void seedUserIds() {
+        long bound = System.currentTimeMillis() + SEED_HORIZON_MILLIS;
+        String latest = userRepository.findLatestUserId(UserIdGenerator.latestPossible(bound), UserIdGenerator.LENGTH);
+        userIdGenerator.seed(latest);
+        LOGGER.info("User ids continue after: " + latest);
+    }
+}
@@ -0,0 +1,14 @@
+package energosoft.rs.security.repository;
+
+import energosoft.rs.security.domain.EmailOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ *  @Author: Veljko Siracki
+ **/
+
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+
+}
@@ -0,0 +1,44 @@
+package energosoft.rs.security.repository;
+
+import energosoft.rs.security.domain.RefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.Date;
+
+/**
+ *  @Author: Veljko Siracki
+ **/
+
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
+
+    RefreshToken findByTokenHash(String tokenHash);
+    RefreshToken findByPreviousTokenHash(String previousTokenHash);
+
+    // compare-and-set on the current hash, so two concurrent refreshes with the same token cannot both win
+    @Modifying
+    @Query("update RefreshToken t set t.previousTokenHash = t.tokenHash, t.tokenHash = ?3, t.rotatedAt = ?4 " +
+            "where t.id = ?1 and t.tokenHash = ?2")
+    int rotate(Long id, String currentTokenHash, String newTokenHash, Date rotatedAt);
+
+    @Modifying
+    @Query("delete from RefreshToken t where t.id = ?1")
+    void revoke(Long id);
+
+    @Modifying
+    @Query("delete from RefreshToken t where t.username = ?1")
+    void deleteByUsername(String username);
+
+    @Modifying
+    @Query("delete from RefreshToken t where t.username in ?1")
+    void deleteByUsernameIn(Collection<String> usernames);
+
+    @Modifying
+    @Query("delete from RefreshToken t where t.expiresAt < ?1")
+    int deleteExpired(Date now);
+
+}
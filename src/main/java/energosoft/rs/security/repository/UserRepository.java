@@ -1,27 +1,50 @@
 package energosoft.rs.security.repository;
 
 import energosoft.rs.security.domain.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import javax.transaction.Transactional;
+import java.util.Collection;
+import java.util.List;
 
 /**
  *  @Author: Veljko Siracki
  **/
 
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
 
+    // every column of User but the password, in the argument order of the UserResponse constructor
+    String SELECT_USER_RESPONSE = "select new energosoft.rs.security.ui.response.UserResponse(u.id, u.userId, "
+            + "u.firstName, u.lastName, u.username, u.email, u.profileImageUrl, u.lastLoginDate, u.lastLoginDateDisplay, "
+            + "u.joinDate, u.role, u.authorities, u.isNotLocked, u.isActive) from User u";
 
     User findUserByUsername(String username);
     User findUserByEmail(String email);
 
+    // the newest generated userId up to the bound: a backward scan of ux_user_user_id from the bound, which only
+    // steps over the older, shorter ids that sort between the newest generated id and the bound
+    @Query("select max(u.userId) from User u where u.userId <= ?1 and length(u.userId) = ?2")
+    String findLatestUserId(String upperBound, int length);
+
+    // the current user and whoever holds the new username or email, in one round trip over the unique indexes
+    @Query("select u from User u where u.username = ?1 or u.username = ?2 or u.email = ?3")
+    List<User> findUsernameAndEmailOwners(String currentUsername, String newUsername, String newEmail);
+
     @Modifying
     @Query("delete from User u where u.username = ?1 ")
     void deleteByUsername( String username);
 
+    // keyset pagination over a segment of users: pass the last id of the previous chunk, the pageable only limits
+    @Query("select u from User u where u.id > ?1 and u.role in ?2 and u.isNotLocked in ?3 order by u.id")
+    List<User> findSegmentAfter(Long afterId, Collection<String> roles, Collection<Boolean> notLocked, Pageable pageable);
+
+    @Query("select count(u) from User u where u.role in ?1 and u.isNotLocked in ?2")
+    long countSegment(Collection<String> roles, Collection<Boolean> notLocked);
+
 }
 
@@ -0,0 +1,31 @@
+package energosoft.rs.security.repository;
+
+import energosoft.rs.security.domain.User;
+import energosoft.rs.security.domain.UserCursor;
+import energosoft.rs.security.enumeration.Role;
+import energosoft.rs.security.enumeration.UserSortField;
+import energosoft.rs.security.ui.response.UserResponse;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ *  @Author: Veljko Siracki
+ **/
+
+public interface UserRepositoryCustom {
+
+    // keyset page: the users right after the cursor (or the first ones without it) in sort order, then by id,
+    // optionally only those with the role and/or the authority
+    List<UserResponse> findPage(UserSortField sort, boolean descending, UserCursor after, Role role, String authority, int limit);
+
+    // the user entity by username, through the natural-id cache when the second-level cache is on
+    User loadUserByUsername(String username);
+
+    // every user in sort order, fetched fetchSize rows at a time; must be consumed inside a transaction
+    Stream<UserResponse> streamAll(UserSortField sort, boolean descending, int fetchSize);
+
+    // up to limit users whose username, email, first or last name starts with the prefix, ignoring case
+    List<UserResponse> search(String prefix, int limit);
+
+}
@@ -0,0 +1,152 @@
+package energosoft.rs.security.repository;
+
+import energosoft.rs.security.domain.User;
+import energosoft.rs.security.domain.UserCursor;
+import energosoft.rs.security.enumeration.Role;
+import energosoft.rs.security.enumeration.UserSortField;
+import energosoft.rs.security.ui.response.UserResponse;
+import energosoft.rs.security.utilty.AuthorityMask;
+import org.hibernate.Session;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static energosoft.rs.security.enumeration.UserSortField.ID;
+import static energosoft.rs.security.repository.UserRepository.SELECT_USER_RESPONSE;
+import static energosoft.rs.security.repository.UserSearchIndexes.SEARCH_COLUMNS;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Keyset pagination and streaming for UserRepository. The JPQL is built from UserSortField properties only, never
+ *  from request input, and a page continues with "sort value, then id" past the cursor instead of an OFFSET, so
+ *  every page costs the same however deep it is. Role and authority filters compare the role_id and authority_mask
+ *  columns, an authority through the list of every mask that grants it.
+ *
+ *  A search runs one query per column of UserSearchIndexes, each a range scan of that column's index cut off at the
+ *  limit, so its cost follows the limit rather than the number of users. Username matches come first.
+ *
+ *  Every method selects UserResponse rows rather than User entities, so nothing is added to the persistence context.
+ **/
+
+public class UserRepositoryImpl implements UserRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+    private UserSearchIndexes searchIndexes;
+
+    @Autowired
+    public UserRepositoryImpl(UserSearchIndexes searchIndexes) {
+        this.searchIndexes = searchIndexes;
+    }
+
+    @Override
+    public List<UserResponse> findPage(UserSortField sort, boolean descending, UserCursor after, Role role, String authority,
+                               int limit) {
+        String property = "u." + sort.getProperty();
+        String comparison = descending ? " < " : " > ";
+        List<String> conditions = new ArrayList<>();
+        if (after != null) {
+            conditions.add(sort == ID ? "u.id" + comparison + ":id"
+                    : "(" + property + comparison + ":value or (" + property + " = :value and u.id" + comparison + ":id))");
+        }
+        if (role != null) {
+            conditions.add("u.role = :role");
+        }
+        if (authority != null) {
+            conditions.add("u.authorities in :authorities");
+        }
+        StringBuilder jpql = new StringBuilder(SELECT_USER_RESPONSE);
+        if (!conditions.isEmpty()) {
+            jpql.append(" where ").append(String.join(" and ", conditions));
+        }
+        jpql.append(orderBy(sort, descending));
+        TypedQuery<UserResponse> query = entityManager.createQuery(jpql.toString(), UserResponse.class).setMaxResults(limit);
+        if (role != null) {
+            query.setParameter("role", role.name());
+        }
+        if (authority != null) {
+            List<String[]> authorities = new ArrayList<>();
+            AuthorityMask.masksWith(authority).forEach(mask -> authorities.add(AuthorityMask.toNames(mask)));
+            query.setParameter("authorities", authorities);
+        }
+        if (after != null) {
+            query.setParameter("id", after.getId());
+            if (sort != ID) {
+                query.setParameter("value", after.getValue());
+            }
+        }
+        return query.getResultList();
+    }
+
+    @Override
+    public User loadUserByUsername(String username) {
+        Session session = entityManager.unwrap(Session.class);
+        if (session.getSessionFactory().getSessionFactoryOptions().isSecondLevelCacheEnabled()) {
+            return session.bySimpleNaturalId(User.class).load(username);
+        }
+        // without the cache a natural-id load resolves the id first, one query more than this
+        return entityManager.createQuery("select u from User u where u.username = :username", User.class)
+                .setParameter("username", username)
+                .getResultStream().findFirst().orElse(null);
+    }
+
+    @Override
+    public Stream<UserResponse> streamAll(UserSortField sort, boolean descending, int fetchSize) {
+        return entityManager.createQuery(SELECT_USER_RESPONSE + orderBy(sort, descending), UserResponse.class)
+                .setHint(QueryHints.HINT_FETCH_SIZE, fetchSize)
+                .getResultStream();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<UserResponse> search(String prefix, int limit) {
+        String pattern = escapeLike(prefix.toLowerCase(Locale.ROOT)) + "%";
+        Set<Long> ids = new LinkedHashSet<>();
+        for (String column : SEARCH_COLUMNS) {
+            String expression = searchIndexes.searchExpression(column);
+            List<Object> matches = entityManager.createNativeQuery("select u.id from \"user\" u where " + expression
+                    + " like ?1 escape '\\' order by " + expression)
+                    .setParameter(1, pattern)
+                    .setMaxResults(limit)
+                    .getResultList();
+            for (Object id : matches) {
+                if (ids.size() == limit) {
+                    break;
+                }
+                ids.add(((Number) id).longValue());
+            }
+            if (ids.size() == limit) {
+                break;
+            }
+        }
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, UserResponse> users = entityManager.createQuery(SELECT_USER_RESPONSE + " where u.id in :ids",
+                UserResponse.class).setParameter("ids", ids).getResultStream()
+                .collect(Collectors.toMap(UserResponse::getId, user -> user));
+        List<UserResponse> ordered = new ArrayList<>(users.size());
+        for (Long id : ids) {
+            if (users.containsKey(id)) {
+                ordered.add(users.get(id));
+            }
+        }
+        return ordered;
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static String orderBy(UserSortField sort, boolean descending) {
+        String direction = descending ? " desc" : " asc";
+        return " order by u." + sort.getProperty() + direction + (sort == ID ? "" : ", u.id" + direction);
+    }
+}
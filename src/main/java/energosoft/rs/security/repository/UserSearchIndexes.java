@@ -0,0 +1,94 @@
+package energosoft.rs.security.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Creates the indexes behind the case-insensitive prefix search of UserRepository and tells it which expression
+ *  each indexed column is searched by. PostgreSQL gets an expression index on lower(column) in the "C" collation,
+ *  which serves both LIKE 'prefix%' and the ordering by it. H2 has no expression indexes, so each column gets a
+ *  computed lower-case copy with a plain index. The statements only add what is missing and run once the context
+ *  is refreshed, after the deferred JPA bootstrap has created the schema; any other database is searched without
+ *  an index.
+ **/
+
+@Component
+public class UserSearchIndexes {
+
+    public static final List<String> SEARCH_COLUMNS =
+            Collections.unmodifiableList(Arrays.asList("username", "email", "first_name", "last_name"));
+
+    private static final String USER_TABLE = "\"user\"";
+
+    private Logger LOGGER = LoggerFactory.getLogger(getClass());
+    private JdbcTemplate jdbcTemplate;
+    private EntityManagerFactory entityManagerFactory;
+    private String databaseProductName;
+    private Dialect dialect;
+
+    @Autowired
+    public UserSearchIndexes(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+        this.databaseProductName = jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        this.dialect = "PostgreSQL".equalsIgnoreCase(databaseProductName) ? Dialect.POSTGRESQL
+                : "H2".equalsIgnoreCase(databaseProductName) ? Dialect.H2 : Dialect.OTHER;
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void createIndexes() {
+        entityManagerFactory.getMetamodel();  // waits for the deferred bootstrap, and with it the schema
+        if (dialect == Dialect.OTHER) {
+            LOGGER.warn("User search is not indexed on " + databaseProductName);
+            return;
+        }
+        for (String column : SEARCH_COLUMNS) {
+            if (dialect == Dialect.POSTGRESQL) {
+                jdbcTemplate.execute("create index if not exists " + indexName(column) + " on " + USER_TABLE
+                        + " ((lower(" + column + ") collate \"C\"))");
+            } else {
+                jdbcTemplate.execute("alter table " + USER_TABLE + " add column if not exists " + searchColumn(column)
+                        + " varchar(255) as lower(" + column + ")");
+                jdbcTemplate.execute("create index if not exists " + indexName(column) + " on " + USER_TABLE
+                        + " (" + searchColumn(column) + ")");
+            }
+        }
+        LOGGER.info("User search indexes are in place on " + databaseProductName);
+    }
+
+    /** The SQL expression that matches the index on the column, to be compared with a lower-case prefix. */
+    public String searchExpression(String column) {
+        switch (dialect) {
+            case POSTGRESQL:
+                return "lower(" + column + ") collate \"C\"";
+            case H2:
+                return searchColumn(column);
+            default:
+                return "lower(" + column + ")";
+        }
+    }
+
+    private static String searchColumn(String column) {
+        return "search_" + column;
+    }
+
+    private static String indexName(String column) {
+        return "ix_user_search_" + column;
+    }
+
+    private enum Dialect { POSTGRESQL, H2, OTHER }
+}
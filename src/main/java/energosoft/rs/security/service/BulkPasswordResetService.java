@@ -0,0 +1,244 @@
+package energosoft.rs.security.service;
+
+import com.google.common.collect.Lists;
+import energosoft.rs.security.domain.BulkJob;
+import energosoft.rs.security.domain.User;
+import energosoft.rs.security.enumeration.Role;
+import energosoft.rs.security.exception.domain.BulkJobNotFoundException;
+import energosoft.rs.security.exception.domain.PasswordHashingRejectedException;
+import energosoft.rs.security.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static energosoft.rs.security.constant.EmailConstant.NEW_PASSWORD_TEMPLATE;
+import static energosoft.rs.security.enumeration.BulkJobStatus.*;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Resets the passwords of every user in a segment (a role and/or lock state) as one background job. Users are read
+ *  from UserRepository in chunks of chunk-size by keyset on the id. The new passwords of a chunk are hashed by
+ *  hashing-parallelism threads through the shared, bounded PasswordEncoder, which leaves room for interactive
+ *  logins. Each chunk then commits in one transaction: the hashes are written with one JDBC batch, the sessions are
+ *  revoked and the new-password emails are queued in the outbox. Jobs run one at a time and their progress is kept in
+ *  memory until max-retained-jobs newer ones have finished.
+ **/
+
+@Service
+public class BulkPasswordResetService {
+
+    private static final String UPDATE_PASSWORD = "update \"user\" set password = ? where id = ?";
+    private static final int PASSWORD_LENGTH = 10;
+
+    private Logger LOGGER = LoggerFactory.getLogger(getClass());
+    private final Map<String, BulkJob> jobs;
+    private UserRepository userRepository;
+    private PasswordEncoder passwordEncoder;
+    private EmailOutboxService emailOutboxService;
+    private TokenRevocationService tokenRevocationService;
+    private RefreshTokenService refreshTokenService;
+    private UserCache userCache;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private TransactionTemplate readOnlyTransactionTemplate;
+    private ExecutorService jobExecutor;
+    private ExecutorService hashingExecutor;
+    private int hashingParallelism;
+    private int chunkSize;
+    private Counter resetCounter;
+    private Counter failedCounter;
+    private Timer chunkTimer;
+
+    @Autowired
+    public BulkPasswordResetService(UserRepository userRepository, PasswordEncoder passwordEncoder,
+                                    EmailOutboxService emailOutboxService, TokenRevocationService tokenRevocationService,
+                                    RefreshTokenService refreshTokenService, UserCache userCache, JdbcTemplate jdbcTemplate,
+                                    PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                                    @Value("${bulk.password-reset.chunk-size:500}") int chunkSize,
+                                    @Value("${bulk.password-reset.hashing-parallelism:0}") int hashingParallelism,
+                                    @Value("${bulk.password-reset.max-retained-jobs:100}") int maxRetainedJobs) {
+        this.userRepository = userRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.emailOutboxService = emailOutboxService;
+        this.tokenRevocationService = tokenRevocationService;
+        this.refreshTokenService = refreshTokenService;
+        this.userCache = userCache;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.chunkSize = Math.max(1, chunkSize);
+        this.hashingParallelism = hashingParallelism > 0 ? hashingParallelism
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.jobExecutor = Executors.newSingleThreadExecutor(runnable -> daemon(runnable, "bulk-password-reset"));
+        this.hashingExecutor = Executors.newFixedThreadPool(this.hashingParallelism,
+                runnable -> daemon(runnable, "bulk-password-hashing"));
+        this.jobs = Collections.synchronizedMap(new LinkedHashMap<String, BulkJob>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, BulkJob> eldest) {
+                return size() > maxRetainedJobs && (eldest.getValue().getStatus() == COMPLETED
+                        || eldest.getValue().getStatus() == FAILED);
+            }
+        });
+        this.resetCounter = Counter.builder("bulk.password-reset.users").tag("outcome", "reset").register(meterRegistry);
+        this.failedCounter = Counter.builder("bulk.password-reset.users").tag("outcome", "failed").register(meterRegistry);
+        this.chunkTimer = Timer.builder("bulk.password-reset.chunk").register(meterRegistry);
+    }
+
+    /** Queues a job over the users with the given role and lock state, null matches any. */
+    public BulkJob start(String role, Boolean locked, boolean sendEmail) {
+        BulkJob job = new BulkJob();
+        job.setId(UUID.randomUUID().toString());
+        job.setRole(role == null ? null : Role.valueOf(role.toUpperCase()).name());
+        job.setLocked(locked);
+        job.setSendEmail(sendEmail);
+        job.setStatus(QUEUED);
+        jobs.put(job.getId(), job);
+        jobExecutor.execute(() -> run(job));
+        LOGGER.info("Queued bulk password reset " + job.getId() + " for role " + job.getRole() + ", locked " + locked);
+        return job;
+    }
+
+    public BulkJob getJob(String id) throws BulkJobNotFoundException {
+        BulkJob job = jobs.get(id);
+        if (job == null) {
+            throw new BulkJobNotFoundException("No bulk job found by id: " + id);
+        }
+        return job;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+        hashingExecutor.shutdownNow();
+    }
+
+    private void run(BulkJob job) {
+        Collection<String> roles = job.getRole() == null
+                ? Arrays.stream(Role.values()).map(Role::name).collect(Collectors.toList())
+                : Collections.singletonList(job.getRole());
+        Collection<Boolean> notLocked = job.getLocked() == null
+                ? Arrays.asList(true, false) : Collections.singletonList(!job.getLocked());
+        long start = System.nanoTime();
+        job.setStartedAt(new Date());
+        job.setStatus(RUNNING);
+        try {
+            job.setTotal(userRepository.countSegment(roles, notLocked));
+            long lastId = 0;
+            List<User> users;
+            do {
+                long afterId = lastId;
+                users = readOnlyTransactionTemplate.execute(status ->
+                        userRepository.findSegmentAfter(afterId, roles, notLocked, PageRequest.of(0, chunkSize)));
+                if (!users.isEmpty()) {
+                    lastId = users.get(users.size() - 1).getId();
+                    long chunkStart = System.nanoTime();
+                    resetChunk(job, users);
+                    chunkTimer.record(System.nanoTime() - chunkStart, TimeUnit.NANOSECONDS);
+                    job.setUsersPerSecond((job.getProcessed() + job.getFailed()) * 1e9 / (System.nanoTime() - start));
+                    LOGGER.info("Bulk password reset " + job.getId() + ": " + (job.getProcessed() + job.getFailed())
+                            + "/" + job.getTotal() + " users, " + Math.round(job.getUsersPerSecond()) + " users/s");
+                }
+            } while (users.size() == chunkSize && !Thread.currentThread().isInterrupted());
+            job.setStatus(COMPLETED);
+        } catch (RuntimeException exception) {
+            LOGGER.error("Bulk password reset " + job.getId() + " failed: " + exception.getMessage());
+            job.setError(exception.getMessage());
+            job.setStatus(FAILED);
+        } finally {
+            job.setFinishedAt(new Date());
+        }
+    }
+
+    private void resetChunk(BulkJob job, List<User> users) {
+        List<String> passwords = new ArrayList<>(users.size());
+        for (int i = 0; i < users.size(); i++) {
+            passwords.add(RandomStringUtils.randomAlphanumeric(PASSWORD_LENGTH));
+        }
+        List<String> hashes = hash(passwords);
+        List<Object[]> updates = new ArrayList<>(users.size());
+        List<String> usernames = new ArrayList<>(users.size());
+        Map<String, Map<String, String>> emails = new LinkedHashMap<>();
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            updates.add(new Object[] { hashes.get(i), user.getId() });
+            usernames.add(user.getUsername());
+            if (job.isSendEmail() && user.getEmail() != null) {
+                Map<String, String> model = new HashMap<>();
+                model.put("firstName", user.getFirstName());
+                model.put("password", passwords.get(i));
+                emails.put(user.getEmail(), model);
+            }
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(UPDATE_PASSWORD, updates);
+                refreshTokenService.revokeAllForUsers(usernames);
+                emailOutboxService.enqueueAll(NEW_PASSWORD_TEMPLATE, emails);
+            });
+        } catch (RuntimeException exception) {
+            LOGGER.error("Bulk password reset " + job.getId() + " could not reset " + users.size() + " users: "
+                    + exception.getMessage());
+            job.setFailed(job.getFailed() + users.size());
+            failedCounter.increment(users.size());
+            return;
+        }
+        usernames.forEach(tokenRevocationService::revokeAllForUser);
+        userCache.invalidateAll(usernames);
+        job.setProcessed(job.getProcessed() + users.size());
+        resetCounter.increment(users.size());
+    }
+
+    /** Hashes the passwords on hashingParallelism threads, keeping their order. */
+    private List<String> hash(List<String> passwords) {
+        int sliceSize = (passwords.size() + hashingParallelism - 1) / hashingParallelism;
+        List<CompletableFuture<List<String>>> slices = new ArrayList<>();
+        for (List<String> slice : Lists.partition(passwords, sliceSize)) {
+            slices.add(CompletableFuture.supplyAsync(() -> slice.stream().map(this::encode).collect(Collectors.toList()),
+                    hashingExecutor));
+        }
+        return slices.stream().flatMap(slice -> slice.join().stream()).collect(Collectors.toList());
+    }
+
+    // the hashing queue is shared with logins, a full queue means waiting rather than failing the job
+    private String encode(String password) {
+        while (true) {
+            try {
+                return passwordEncoder.encode(password);
+            } catch (PasswordHashingRejectedException exception) {
+                try {
+                    TimeUnit.SECONDS.sleep(exception.getRetryAfterSeconds());
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for password hashing", interruptedException);
+                }
+            }
+        }
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,364 @@
+package energosoft.rs.security.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import energosoft.rs.security.domain.EmailOutbox;
+import energosoft.rs.security.repository.EmailOutboxRepository;
+import energosoft.rs.security.utilty.EmailModelCipher;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.security.GeneralSecurityException;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static energosoft.rs.security.enumeration.EmailOutboxStatus.PENDING;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Transactional outbox for emails. enqueue only inserts a row in the caller's transaction, so a request never
+ *  waits for the mail server and an SMTP failure can no longer roll back the change that sent the email.
+ *
+ *  Delivery is requested every poll-interval and right after a transaction that enqueued an email commits, and runs
+ *  on the outbox's own dispatcher thread, so slow SMTP never holds up the shared scheduler. It claims up to
+ *  batch-size due rows, sends them on a pool of worker threads and records the outcome of the whole batch in one
+ *  transaction: sent rows are deleted, failed ones are retried with exponential backoff and become DEAD after
+ *  max-attempts. A claim is a compare-and-set on the attempt count that also leases the row until lease has
+ *  passed, so several nodes can deliver from the same table and a node that dies mid-batch only delays its rows.
+ *
+ *  The model may carry a generated password, so it is stored encrypted with email.outbox.key and dropped from a
+ *  row once it is DEAD; a sent row is deleted. The key is required outside the dev profile, where a random one
+ *  is used instead. A row this node cannot decrypt was written under another key: it is released for the nodes
+ *  that hold that key without counting an attempt, so it is never dead-lettered for it.
+ **/
+
+@Service
+public class EmailOutboxService {
+
+    private static final String SELECT_DUE = "select id, template, recipient, model, attempts, created_at from email_outbox "
+            + "where status = 'PENDING' and next_attempt_at <= ? order by next_attempt_at";
+    private static final String CLAIM = "update email_outbox set attempts = attempts + 1, next_attempt_at = ? "
+            + "where id = ? and attempts = ? and status = 'PENDING'";
+    private static final String DELETE_SENT = "delete from email_outbox where id = ?";
+    private static final String RETRY = "update email_outbox set next_attempt_at = ?, last_error = ? where id = ?";
+    private static final String RELEASE = "update email_outbox set attempts = attempts - 1, next_attempt_at = ? where id = ?";
+    private static final String DEAD = "update email_outbox set status = 'DEAD', model = null, next_attempt_at = ?, last_error = ? where id = ?";
+    private static final String PURGE_DEAD = "delete from email_outbox where status = 'DEAD' and next_attempt_at < ?";
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private Logger LOGGER = LoggerFactory.getLogger(getClass());
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicBoolean deliveryRequested = new AtomicBoolean();
+    private EmailOutboxRepository emailOutboxRepository;
+    private EmailService emailService;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private ExecutorService dispatcher;
+    private ThreadPoolExecutor executor;
+    private EmailModelCipher cipher;
+    private int batchSize;
+    private int maxAttempts;
+    private long leaseMillis;
+    private long initialBackoffMillis;
+    private long maxBackoffMillis;
+    private long deadRetentionMillis;
+    private Counter sentCounter;
+    private Counter retryCounter;
+    private Counter releasedCounter;
+    private Counter deadCounter;
+    private Timer sendTimer;
+    private Timer lagTimer;
+
+    @Autowired
+    public EmailOutboxService(EmailOutboxRepository emailOutboxRepository, EmailService emailService,
+                              JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry, Environment environment,
+                              @Value("${email.outbox.threads:4}") int threads,
+                              @Value("${email.outbox.batch-size:50}") int batchSize,
+                              @Value("${email.outbox.max-attempts:8}") int maxAttempts,
+                              @Value("${email.outbox.lease:5m}") Duration lease,
+                              @Value("${email.outbox.initial-backoff:30s}") Duration initialBackoff,
+                              @Value("${email.outbox.max-backoff:1h}") Duration maxBackoff,
+                              @Value("${email.outbox.dead-retention:7d}") Duration deadRetention,
+                              @Value("${email.outbox.key:}") String key) {
+        this.emailOutboxRepository = emailOutboxRepository;
+        this.emailService = emailService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.dispatcher = Executors.newSingleThreadExecutor(new EmailDeliveryThreadFactory("email-outbox-"));
+        this.executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(Math.max(1, threads), new EmailDeliveryThreadFactory("email-delivery-"));
+        this.batchSize = Math.max(1, batchSize);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.leaseMillis = lease.toMillis();
+        this.initialBackoffMillis = Math.max(1, initialBackoff.toMillis());
+        this.maxBackoffMillis = Math.max(initialBackoffMillis, maxBackoff.toMillis());
+        this.deadRetentionMillis = deadRetention.toMillis();
+        if (StringUtils.isBlank(key)) {
+            if (!environment.acceptsProfiles(Profiles.of("dev"))) {
+                throw new IllegalStateException("email.outbox.key must be set: a base64 AES key shared by every node");
+            }
+            LOGGER.warn("email.outbox.key is not set, queued emails can only be delivered by this node until it restarts");
+            this.cipher = EmailModelCipher.withRandomKey();
+        } else {
+            this.cipher = new EmailModelCipher(Base64.getDecoder().decode(key.trim()));
+        }
+        this.sentCounter = Counter.builder("email.outbox.delivered").tag("outcome", "sent").register(meterRegistry);
+        this.retryCounter = Counter.builder("email.outbox.delivered").tag("outcome", "retry").register(meterRegistry);
+        this.releasedCounter = Counter.builder("email.outbox.delivered").tag("outcome", "released").register(meterRegistry);
+        this.deadCounter = Counter.builder("email.outbox.delivered").tag("outcome", "dead").register(meterRegistry);
+        this.sendTimer = Timer.builder("email.outbox.send").register(meterRegistry);
+        this.lagTimer = Timer.builder("email.outbox.lag").register(meterRegistry);
+        Gauge.builder("email.outbox.active", executor, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+    }
+
+    /** Queues an email in the current transaction; delivery starts once that transaction commits. */
+    public void enqueue(String template, String recipient, Map<String, String> model) {
+        enqueueAll(template, Collections.singletonMap(recipient, model));
+    }
+
+    /** Queues one email per recipient with the same template, e.g. for a bulk job. */
+    public void enqueueAll(String template, Map<String, Map<String, String>> modelsByRecipient) {
+        if (modelsByRecipient.isEmpty()) {
+            return;
+        }
+        Date now = new Date();
+        List<EmailOutbox> emails = new ArrayList<>(modelsByRecipient.size());
+        modelsByRecipient.forEach((recipient, model) -> {
+            EmailOutbox email = new EmailOutbox();
+            email.setTemplate(template);
+            email.setRecipient(recipient);
+            email.setModel(toJson(model));
+            email.setStatus(PENDING);
+            email.setNextAttemptAt(now);
+            email.setCreatedAt(now);
+            emails.add(email);
+        });
+        emailOutboxRepository.saveAll(emails);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    requestDelivery();
+                }
+            });
+        } else {
+            requestDelivery();
+        }
+    }
+
+    /** Only hands delivery to the dispatcher thread; a request while one is already queued is dropped. */
+    @Scheduled(fixedDelayString = "${email.outbox.poll-interval:PT1S}")
+    public void poll() {
+        requestDelivery();
+    }
+
+    @Scheduled(fixedDelayString = "${email.outbox.purge-interval:PT1H}")
+    public void purgeDead() {
+        Timestamp deadBefore = new Timestamp(System.currentTimeMillis() - deadRetentionMillis);
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(PURGE_DEAD, deadBefore));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdown();
+        executor.shutdown();
+    }
+
+    private void requestDelivery() {
+        if (deliveryRequested.compareAndSet(false, true)) {
+            dispatcher.execute(this::deliver);
+        }
+    }
+
+    private void deliver() {
+        deliveryRequested.set(false);
+        try {
+            int claimed;
+            do {
+                List<PendingEmail> batch = claim();
+                claimed = batch.size();
+                if (claimed > 0) {
+                    send(batch);
+                    record(batch);
+                }
+            } while (claimed == batchSize);
+        } catch (RuntimeException exception) {
+            LOGGER.error("Email delivery failed, retrying at the next poll", exception);
+        }
+    }
+
+    private List<PendingEmail> claim() {
+        long now = System.currentTimeMillis();
+        List<PendingEmail> due = jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_DUE);
+            statement.setTimestamp(1, new Timestamp(now));
+            statement.setMaxRows(batchSize);
+            return statement;
+        }, (resultSet, row) -> new PendingEmail(resultSet.getLong(1), resultSet.getString(2), resultSet.getString(3),
+                resultSet.getString(4), resultSet.getInt(5), resultSet.getTimestamp(6)));
+        if (due.isEmpty()) {
+            return due;
+        }
+        Timestamp leaseUntil = new Timestamp(now + leaseMillis);
+        List<Object[]> claims = new ArrayList<>(due.size());
+        due.forEach(email -> claims.add(new Object[] { leaseUntil, email.id, email.attempts }));
+        int[] updated = transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(CLAIM, claims));
+        List<PendingEmail> claimed = new ArrayList<>(due.size());
+        for (int i = 0; i < due.size(); i++) {
+            if (updated[i] != 0) {  // 0 means another node claimed it first
+                due.get(i).attempts++;
+                claimed.add(due.get(i));
+            }
+        }
+        return claimed;
+    }
+
+    /** Splits the batch between the worker threads and waits until every email has been tried once. */
+    private void send(List<PendingEmail> batch) {
+        int sliceSize = (batch.size() + executor.getMaximumPoolSize() - 1) / executor.getMaximumPoolSize();
+        List<CompletableFuture<Void>> slices = new ArrayList<>();
+        for (List<PendingEmail> slice : Lists.partition(batch, sliceSize)) {
+            slices.add(CompletableFuture.runAsync(() -> slice.forEach(this::send), executor));
+        }
+        CompletableFuture.allOf(slices.toArray(new CompletableFuture[0])).join();
+    }
+
+    private void send(PendingEmail email) {
+        long start = System.nanoTime();
+        try {
+            emailService.send(email.template, email.recipient, fromJson(email.model));
+            email.error = null;
+        } catch (GeneralSecurityException exception) {
+            email.foreign = true;
+            email.error = "Encrypted with another email.outbox.key";
+        } catch (Exception exception) {
+            email.error = StringUtils.abbreviate(exception.getClass().getSimpleName() + ": " + exception.getMessage(),
+                    MAX_ERROR_LENGTH);
+        } finally {
+            sendTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void record(List<PendingEmail> batch) {
+        long now = System.currentTimeMillis();
+        List<Object[]> sent = new ArrayList<>();
+        List<Object[]> retries = new ArrayList<>();
+        List<Object[]> dead = new ArrayList<>();
+        List<Object[]> released = new ArrayList<>();
+        for (PendingEmail email : batch) {
+            if (email.error == null) {
+                sent.add(new Object[] { email.id });
+            } else if (email.foreign) {
+                released.add(new Object[] { new Timestamp(now + backoffMillis(1)), email.id });
+                LOGGER.warn("Could not decrypt email " + email.id + ", leaving it to the nodes with its key");
+            } else if (email.attempts >= maxAttempts) {
+                dead.add(new Object[] { new Timestamp(now), email.error, email.id });
+                LOGGER.error("Giving up on email " + email.id + " after " + email.attempts + " attempts: " + email.error);
+            } else {
+                retries.add(new Object[] { new Timestamp(now + backoffMillis(email.attempts)), email.error, email.id });
+                LOGGER.warn("Could not send email " + email.id + ", attempt " + email.attempts + ": " + email.error);
+            }
+        }
+        // a failure here leaves the rows leased, they are tried again once the lease has passed
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(DELETE_SENT, sent);
+            jdbcTemplate.batchUpdate(RETRY, retries);
+            jdbcTemplate.batchUpdate(DEAD, dead);
+            jdbcTemplate.batchUpdate(RELEASE, released);
+        });
+        sentCounter.increment(sent.size());
+        retryCounter.increment(retries.size());
+        deadCounter.increment(dead.size());
+        releasedCounter.increment(released.size());
+        batch.stream().filter(email -> email.error == null && email.createdAt != null)
+                .forEach(email -> lagTimer.record(now - email.createdAt.getTime(), TimeUnit.MILLISECONDS));
+    }
+
+    /** Exponential backoff with jitter, so emails that failed together do not retry together. */
+    private long backoffMillis(int attempts) {
+        long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempts - 1, 20));
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+
+    private String toJson(Map<String, String> model) {
+        try {
+            return cipher.encrypt(objectMapper.writeValueAsString(model));
+        } catch (JsonProcessingException exception) {
+            throw new IllegalArgumentException("Email model is not serializable", exception);
+        }
+    }
+
+    private Map<String, String> fromJson(String model) throws JsonProcessingException, GeneralSecurityException {
+        return model == null ? Collections.emptyMap()
+                : objectMapper.readValue(cipher.decrypt(model), new TypeReference<Map<String, String>>() {});
+    }
+
+    private static final class PendingEmail {
+
+        private final long id;
+        private final String template;
+        private final String recipient;
+        private final String model;
+        private final Date createdAt;
+        private int attempts;
+        private volatile String error;
+        private volatile boolean foreign;
+
+        private PendingEmail(long id, String template, String recipient, String model, int attempts, Date createdAt) {
+            this.id = id;
+            this.template = template;
+            this.recipient = recipient;
+            this.model = model;
+            this.attempts = attempts;
+            this.createdAt = createdAt;
+        }
+    }
+
+    private static final class EmailDeliveryThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNumber = new AtomicInteger();
+        private final String prefix;
+
+        private EmailDeliveryThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
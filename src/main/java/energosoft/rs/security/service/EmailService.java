@@ -1,56 +1,164 @@
 package energosoft.rs.security.service;
 
-import com.sun.mail.smtp.SMTPTransport;
+import energosoft.rs.security.configuration.EmailProperties;
+import energosoft.rs.security.utilty.EmailTemplate;
+import energosoft.rs.security.utilty.SmtpTransportPool;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
 
+import javax.activation.DataHandler;
+import javax.annotation.PreDestroy;
 import javax.mail.Message;
 import javax.mail.MessagingException;
-import javax.mail.Session;
 import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeBodyPart;
 import javax.mail.internet.MimeMessage;
+import javax.mail.internet.MimeMultipart;
+import javax.mail.internet.MimeUtility;
+import javax.mail.util.ByteArrayDataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.Date;
-import java.util.Properties;
+import java.util.HashMap;
+import java.util.Map;
 
 import static energosoft.rs.security.constant.EmailConstant.*;
 
 /**
  *  @Author: Veljko Siracki
+ *
+ *  Builds the application's emails from the templates under templates/email and sends them over pooled SMTP
+ *  connections configured under email.*. Every template is a <name>.txt file, whose first line is the subject, and
+ *  a <name>.html body placed into layout.html; both are compiled once at startup and sent as a multipart/alternative
+ *  message. Sender, CC and subjects without per-message variables are encoded once here as well.
  **/
 
 @Service
 public class EmailService {
 
+    private static final String SUBJECT_HEADER = "Subject";
+    private static final String CONTENT_TYPE_HEADER = "Content-Type";
+    private static final String CONTENT_TRANSFER_ENCODING_HEADER = "Content-Transfer-Encoding";
+    private static final String TEXT_CONTENT_TYPE = "text/plain; charset=UTF-8";
+    private static final String HTML_CONTENT_TYPE = "text/html; charset=UTF-8";
+    private static final String QUOTED_PRINTABLE = "quoted-printable";
 
-    public void sendNewPasswordEmail(String firstName, String password, String email) throws MessagingException {
-        Message message = createEmail(firstName, password, email);
-        SMTPTransport smtpTransport = (SMTPTransport) getEmailSession().getTransport(SIMPLE_MAIL_TRANSFER_PROTOCOL);
-        smtpTransport.connect(GMAIL_SMTP_SERVER, USERNAME, PASSWORD);
-        smtpTransport.sendMessage(message, message.getAllRecipients());
-        smtpTransport.close();
+    private SmtpTransportPool transportPool;
+    private Map<String, CompiledEmail> templates;
+    private InternetAddress from;
+    private InternetAddress[] cc;
+
+    @Autowired
+    public EmailService(EmailProperties emailProperties) throws IOException, MessagingException {
+        this.transportPool = new SmtpTransportPool(emailProperties.getSmtp());
+        this.from = new InternetAddress(emailProperties.getFrom());
+        this.cc = StringUtils.isBlank(emailProperties.getCc())
+                ? new InternetAddress[0] : InternetAddress.parse(emailProperties.getCc(), false);
+        this.templates = compileTemplates(Collections.singletonMap("subject", emailProperties.getSubject()),
+                NEW_PASSWORD_TEMPLATE, WELCOME_TEMPLATE, ACCOUNT_LOCKED_TEMPLATE);
+    }
+
+    /** Sends an email queued by EmailOutboxService, the model holds the template's parameters. */
+    public void send(String template, String recipient, Map<String, String> model) throws MessagingException {
+        CompiledEmail email = templates.get(template);
+        if (email == null) {
+            throw new MessagingException("Unknown email template " + template);
+        }
+        transportPool.send(createEmail(email, recipient, model));
+    }
+
+    @Scheduled(fixedDelayString = "${email.smtp.pool.evict-interval:PT30S}")
+    public void evictIdleConnections() {
+        transportPool.evictIdle();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        transportPool.close();
     }
 
-    private Message createEmail(String firstName, String password, String email) throws MessagingException {
-        Message message = new MimeMessage(getEmailSession());
-        message.setFrom(new InternetAddress(FROM_EMAIL));
-        message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(email, false));
-        message.setRecipients(Message.RecipientType.CC, InternetAddress.parse(CC_EMAIL, false));
-        message.setSubject(EMAIL_SUBJECT);
-        message.setText("Hello " + firstName + "\n \n Your new account password is: " + password + "\n \n The Support Team");
+    private Message createEmail(CompiledEmail email, String recipient, Map<String, String> model) throws MessagingException {
+        MimeMessage message = new MimeMessage(transportPool.getSession());
+        message.setFrom(from);
+        message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(recipient, false));
+        if (cc.length > 0) {
+            message.setRecipients(Message.RecipientType.CC, cc);
+        }
+        if (email.encodedSubject != null) {
+            message.setHeader(SUBJECT_HEADER, email.encodedSubject);
+        } else {
+            message.setSubject(email.subject.renderString(model), StandardCharsets.UTF_8.name());
+        }
+        MimeMultipart multipart = new MimeMultipart("alternative");
+        multipart.addBodyPart(bodyPart(email.text.render(model), TEXT_CONTENT_TYPE));
+        multipart.addBodyPart(bodyPart(email.html.render(model), HTML_CONTENT_TYPE));
+        message.setContent(multipart);
         message.setSentDate(new Date());
         message.saveChanges();
         return message;
     }
 
+    // with the transfer encoding set up front JavaMail does not scan the content to choose one
+    private static MimeBodyPart bodyPart(byte[] content, String contentType) throws MessagingException {
+        MimeBodyPart bodyPart = new MimeBodyPart();
+        bodyPart.setDataHandler(new DataHandler(new ByteArrayDataSource(content, contentType)));
+        bodyPart.setHeader(CONTENT_TYPE_HEADER, contentType);
+        bodyPart.setHeader(CONTENT_TRANSFER_ENCODING_HEADER, QUOTED_PRINTABLE);
+        return bodyPart;
+    }
+
+    private static Map<String, CompiledEmail> compileTemplates(Map<String, String> globals, String... names)
+            throws IOException, MessagingException {
+        String layout = readTemplate(EMAIL_LAYOUT_TEMPLATE + ".html");
+        Map<String, CompiledEmail> templates = new HashMap<>();
+        for (String name : names) {
+            String text = readTemplate(name + ".txt");
+            int subjectEnd = text.indexOf('\n');
+            String subject = subjectEnd < 0 ? text : text.substring(0, subjectEnd).trim();
+            if (!subject.startsWith(EMAIL_SUBJECT_PREFIX)) {
+                throw new IllegalStateException("Email template " + name + ".txt must start with " + EMAIL_SUBJECT_PREFIX);
+            }
+            String html = layout.replace(EMAIL_LAYOUT_BODY, readTemplate(name + ".html"));
+            templates.put(name, new CompiledEmail(
+                    EmailTemplate.compile(subject.substring(EMAIL_SUBJECT_PREFIX.length()).trim(), false, globals),
+                    EmailTemplate.compile(text.substring(subjectEnd + 1), false, globals),
+                    EmailTemplate.compile(html, true, globals)));
+        }
+        return Collections.unmodifiableMap(templates);
+    }
 
-    private Session getEmailSession() {
-        Properties properties = System.getProperties();
-        properties.put(SMTP_HOST, GMAIL_SMTP_SERVER );
-        properties.put(SMTP_AUTH, true );
-        properties.put(SMTP_PORT, DEFAULT_PORT);
-        properties.put(SMTP_STARTTLS_ENABLE, true );
-        properties.put(SMTP_STARTTLS_REQUIRED, true );
-        return Session.getInstance(properties, null);
+    private static String readTemplate(String fileName) throws IOException {
+        try (InputStream inputStream = new ClassPathResource(EMAIL_TEMPLATE_LOCATION + fileName).getInputStream()) {
+            return StreamUtils.copyToString(inputStream, StandardCharsets.UTF_8);
+        }
     }
 
+    private static final class CompiledEmail {
 
+        private final EmailTemplate subject;
+        private final EmailTemplate text;
+        private final EmailTemplate html;
+        private final String encodedSubject;  // set when the subject is the same for every message
+
+        private CompiledEmail(EmailTemplate subject, EmailTemplate text, EmailTemplate html) throws MessagingException {
+            this.subject = subject;
+            this.text = text;
+            this.html = html;
+            this.encodedSubject = subject.isStatic() ? encodeSubject(subject.renderString(Collections.emptyMap())) : null;
+        }
+
+        private static String encodeSubject(String subject) throws MessagingException {
+            try {
+                return MimeUtility.fold(9, MimeUtility.encodeText(subject, StandardCharsets.UTF_8.name(), null));
+            } catch (IOException exception) {
+                throw new MessagingException("Could not encode email subject " + subject, exception);
+            }
+        }
+    }
 }
@@ -0,0 +1,139 @@
+package energosoft.rs.security.service;
+
+import energosoft.rs.security.domain.User;
+import energosoft.rs.security.ui.response.UserResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Write-behind buffer for last login dates. A login only records its timestamp here; repeated logins of the same
+ *  user are coalesced into one pending entry and written with a single JDBC batch on a timer, as soon as the
+ *  buffer reaches its batch size, and once more on shutdown.
+ **/
+
+@Service
+public class LastLoginService {
+
+    private static final String UPDATE_LAST_LOGIN =
+            "update \"user\" set last_login_date_display = ?, last_login_date = ? where id = ?";
+
+    private Logger LOGGER = LoggerFactory.getLogger(getClass());
+    private final Map<Long, LastLogin> pending = new ConcurrentHashMap<>();  // user id -> not yet written login dates
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private TaskScheduler taskScheduler;
+    private int batchSize;
+
+    @Autowired
+    public LastLoginService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                            TaskScheduler taskScheduler, @Value("${user.last-login.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.taskScheduler = taskScheduler;
+        this.batchSize = batchSize;
+    }
+
+    /** Records a login of the user at the given time; the user row itself is left untouched. */
+    public void recordLogin(User user, Date loginDate) {
+        pending.merge(user.getId(), new LastLogin(user.getLastLoginDate(), loginDate),
+                (current, login) -> new LastLogin(current.lastLoginDate, login.lastLoginDate));
+        if (pending.size() >= batchSize && flushRequested.compareAndSet(false, true)) {
+            taskScheduler.schedule(this::flush, new Date());
+        }
+    }
+
+    /** Copies a not yet written login onto the user, which must not be a managed entity. */
+    public User applyPending(User user) {
+        LastLogin lastLogin = pending.get(user.getId());
+        if (lastLogin != null) {
+            user.setLastLoginDateDisplay(lastLogin.lastLoginDateDisplay);
+            user.setLastLoginDate(lastLogin.lastLoginDate);
+        }
+        return user;
+    }
+
+    public UserResponse applyPending(UserResponse user) {
+        LastLogin lastLogin = pending.get(user.getId());
+        if (lastLogin != null) {
+            user.setLastLoginDateDisplay(lastLogin.lastLoginDateDisplay);
+            user.setLastLoginDate(lastLogin.lastLoginDate);
+        }
+        return user;
+    }
+
+    public boolean hasPending(User user) {
+        return pending.containsKey(user.getId());
+    }
+
+    @Scheduled(fixedDelayString = "${user.last-login.flush-interval:PT5S}")
+    public synchronized void flush() {
+        flushRequested.set(false);
+        while (!pending.isEmpty()) {
+            List<Long> ids = new ArrayList<>(batchSize);
+            List<Object[]> batch = new ArrayList<>(batchSize);
+            for (Long id : pending.keySet()) {
+                LastLogin lastLogin = pending.remove(id);
+                if (lastLogin != null) {
+                    ids.add(id);
+                    batch.add(new Object[] { timestamp(lastLogin.lastLoginDateDisplay), timestamp(lastLogin.lastLoginDate), id });
+                }
+                if (batch.size() == batchSize) {
+                    break;
+                }
+            }
+            try {
+                // in a transaction, the datasource may not auto-commit (see the prod profile)
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(UPDATE_LAST_LOGIN, batch));
+            } catch (RuntimeException exception) {
+                LOGGER.error("Could not write last login dates of " + batch.size() + " users: " + exception.getMessage());
+                for (int i = 0; i < ids.size(); i++) {
+                    Object[] row = batch.get(i);
+                    // a login recorded in the meantime is newer, the unwritten one becomes its display date
+                    pending.merge(ids.get(i), new LastLogin((Date) row[0], (Date) row[1]),
+                            (current, failed) -> new LastLogin(failed.lastLoginDate, current.lastLoginDate));
+                }
+                return;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private static Timestamp timestamp(Date date) {
+        return date == null ? null : new Timestamp(date.getTime());
+    }
+
+    private static final class LastLogin {
+
+        private final Date lastLoginDateDisplay;
+        private final Date lastLoginDate;
+
+        private LastLogin(Date lastLoginDateDisplay, Date lastLoginDate) {
+            this.lastLoginDateDisplay = lastLoginDateDisplay;
+            this.lastLoginDate = lastLoginDate;
+        }
+    }
+}
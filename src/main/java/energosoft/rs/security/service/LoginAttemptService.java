@@ -1,14 +1,8 @@
 package energosoft.rs.security.service;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.concurrent.ExecutionException;
-import static java.util.concurrent.TimeUnit.*;
-
 /**
  *  @Author: Veljko Siracki
  **/
@@ -17,43 +11,23 @@ import static java.util.concurrent.TimeUnit.*;
 public class LoginAttemptService {
 
     private static final int MAXIMUM_NUMBER_OF_ATTEMPTS = 5;
-    private static final int ATTEMPTS_INCREMENT = 1;
-    private LoadingCache<String, Integer> loginAttemptCache;
+    private LoginAttemptStore loginAttemptStore;
 
     @Autowired
-    public LoginAttemptService() {
-        super();
-        loginAttemptCache = CacheBuilder.newBuilder().expireAfterWrite(15, MINUTES)
-                .maximumSize(100).build(new CacheLoader<>() {
-                     public Integer load(String key) {
-                     return 0;
-                }
-        });
+    public LoginAttemptService(LoginAttemptStore loginAttemptStore) {
+        this.loginAttemptStore = loginAttemptStore;
     }
 
     public void evictUserFromLoginAttemptCache(String username) {
-        loginAttemptCache.invalidate(username);
+        loginAttemptStore.reset(username);
     }
 
     public void addUserToLoginAttemptCache(String username)  {
-        int attempts = 0;
-        try {
-            attempts = ATTEMPTS_INCREMENT + loginAttemptCache.get(username);
-        }catch (ExecutionException e) {
-            e.printStackTrace();
-        }
-
-          loginAttemptCache.put(username, attempts);
-
+        loginAttemptStore.increment(username, System.currentTimeMillis());
     }
 
     public boolean hasExceededMaxAttempts(String username) {
-        try {
-            return loginAttemptCache.get(username) >= MAXIMUM_NUMBER_OF_ATTEMPTS;
-        } catch (ExecutionException e) {
-            e.printStackTrace();
-        }
-        return  false;
+        return loginAttemptStore.count(username, System.currentTimeMillis()) >= MAXIMUM_NUMBER_OF_ATTEMPTS;
     }
 
 }
@@ -0,0 +1,18 @@
+package energosoft.rs.security.service;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Failed login counters behind LoginAttemptService, counted over a sliding window. Selected with
+ *  login.attempts.store: memory (per node, the default) or jdbc (shared by every node through the datasource).
+ **/
+
+public interface LoginAttemptStore {
+
+    /** Counts a failed login and returns the failed logins within the window, this one included. */
+    int increment(String username, long now);
+
+    int count(String username, long now);
+
+    void reset(String username);
+}
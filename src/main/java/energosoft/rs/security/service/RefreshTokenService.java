@@ -0,0 +1,138 @@
+package energosoft.rs.security.service;
+
+import com.google.common.hash.Hashing;
+import energosoft.rs.security.domain.RefreshToken;
+import energosoft.rs.security.domain.TokenPair;
+import energosoft.rs.security.domain.UserPrincipal;
+import energosoft.rs.security.exception.domain.InvalidRefreshTokenException;
+import energosoft.rs.security.repository.RefreshTokenRepository;
+import energosoft.rs.security.utilty.AuthorityMask;
+import energosoft.rs.security.utilty.JWTTokenProvider;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Date;
+
+import static energosoft.rs.security.constant.SecurityConstant.INVALID_REFRESH_TOKEN;
+import static energosoft.rs.security.constant.SecurityConstant.REFRESH_TOKEN_EXPIRATION_TIME;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Issues and rotates opaque refresh tokens. A refresh is two indexed statements (lookup by hash, compare-and-set
+ *  rotate) plus signing a new access token: no BCrypt and no loadUserByUsername. Anything that changes what a user
+ *  may do (password change, lock, update, delete) deletes the user's sessions through revokeAllForUser.
+ **/
+
+@Service
+@Transactional
+public class RefreshTokenService {
+
+    private static final int TOKEN_BYTES = 32;
+
+    private Logger LOGGER = LoggerFactory.getLogger(getClass());
+    private final SecureRandom secureRandom = new SecureRandom();
+    private RefreshTokenRepository refreshTokenRepository;
+    private JWTTokenProvider jwtTokenProvider;
+
+    @Autowired
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository, JWTTokenProvider jwtTokenProvider) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.jwtTokenProvider = jwtTokenProvider;
+    }
+
+    /** Starts a new session for a user who just authenticated with a password. */
+    public TokenPair issue(UserPrincipal userPrincipal) {
+        String accessToken = jwtTokenProvider.generateJwtToken(userPrincipal);
+        int authorityMask = AuthorityMask.encode(userPrincipal.getAuthorities());
+        if (authorityMask == AuthorityMask.UNKNOWN) {
+            // authorities outside Authority.AUTHORITY_BITS cannot be restored on refresh, such users log in again instead
+            return new TokenPair(accessToken, null);
+        }
+        String refreshToken = generateToken();
+        Date now = new Date();
+        RefreshToken session = new RefreshToken();
+        session.setTokenHash(hash(refreshToken));
+        session.setUsername(userPrincipal.getUsername());
+        session.setAuthorityMask(authorityMask);
+        session.setCreatedAt(now);
+        session.setExpiresAt(new Date(now.getTime() + REFRESH_TOKEN_EXPIRATION_TIME));
+        refreshTokenRepository.save(session);
+        return new TokenPair(accessToken, refreshToken);
+    }
+
+    /**
+     *  Exchanges a refresh token for a new access token and a new refresh token. Presenting a token that was
+     *  already rotated away means it leaked or was replayed, so the whole session is revoked.
+     */
+    @Transactional(dontRollbackOn = InvalidRefreshTokenException.class)
+    public TokenPair refresh(String refreshToken) throws InvalidRefreshTokenException {
+        if (StringUtils.isBlank(refreshToken)) {
+            throw new InvalidRefreshTokenException(INVALID_REFRESH_TOKEN);
+        }
+        String tokenHash = hash(refreshToken);
+        RefreshToken session = refreshTokenRepository.findByTokenHash(tokenHash);
+        if (session == null) {
+            RefreshToken reused = refreshTokenRepository.findByPreviousTokenHash(tokenHash);
+            if (reused != null) {
+                revokeSession(reused);
+            }
+            throw new InvalidRefreshTokenException(INVALID_REFRESH_TOKEN);
+        }
+        Date now = new Date();
+        if (session.getExpiresAt().before(now) || !AuthorityMask.isValid(session.getAuthorityMask())) {
+            refreshTokenRepository.revoke(session.getId());
+            throw new InvalidRefreshTokenException(INVALID_REFRESH_TOKEN);
+        }
+        String newRefreshToken = generateToken();
+        if (refreshTokenRepository.rotate(session.getId(), tokenHash, hash(newRefreshToken), now) == 0) {
+            revokeSession(session);
+            throw new InvalidRefreshTokenException(INVALID_REFRESH_TOKEN);
+        }
+        String accessToken = jwtTokenProvider.generateJwtToken(session.getUsername(),
+                AuthorityMask.toGrantedAuthorities(session.getAuthorityMask()));
+        return new TokenPair(accessToken, newRefreshToken);
+    }
+
+    public void revokeAllForUser(String username) {
+        refreshTokenRepository.deleteByUsername(username);
+    }
+
+    public void revokeAllForUsers(Collection<String> usernames) {
+        if (!usernames.isEmpty()) {
+            refreshTokenRepository.deleteByUsernameIn(usernames);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.refresh.purge-interval:PT1H}")
+    public void purgeExpired() {
+        int deleted = refreshTokenRepository.deleteExpired(new Date());
+        if (deleted > 0) {
+            LOGGER.info("Purged expired refresh tokens: " + deleted);
+        }
+    }
+
+    private void revokeSession(RefreshToken session) {
+        LOGGER.warn("Refresh token reuse detected, revoking session of user: " + session.getUsername());
+        refreshTokenRepository.revoke(session.getId());
+    }
+
+    private String generateToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        secureRandom.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static String hash(String refreshToken) {
+        return Hashing.sha256().hashString(refreshToken, StandardCharsets.UTF_8).toString();
+    }
+}
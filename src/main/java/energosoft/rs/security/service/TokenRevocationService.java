@@ -0,0 +1,102 @@
+package energosoft.rs.security.service;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import energosoft.rs.security.utilty.TokenId;
+import energosoft.rs.security.utilty.VerifiedToken;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static energosoft.rs.security.constant.SecurityConstant.ACCESS_TOKEN_EXPIRATION_TIME;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Revoked token ids (jti) and per-user revocation cut-offs. Bloom filters sit in front of the exact maps, so the
+ *  common "not revoked" answer is a couple of lock-free bit reads. Every entry is dropped once the tokens it
+ *  covers would have expired anyway.
+ **/
+
+@Service
+public class TokenRevocationService {
+
+    private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    private final int expectedInsertions;
+    private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();   // jti -> token expiry
+    private final Map<String, Long> revokedUsers = new ConcurrentHashMap<>();    // username -> tokens issued before are revoked
+    private volatile BloomFilter<CharSequence> revokedTokenFilter;
+    private volatile BloomFilter<CharSequence> revokedUserFilter;
+
+    @Autowired
+    public TokenRevocationService(@Value("${jwt.revocation.expected-insertions:100000}") int expectedInsertions) {
+        this.expectedInsertions = expectedInsertions;
+        this.revokedTokenFilter = newFilter(0);
+        this.revokedUserFilter = newFilter(0);
+    }
+
+    public boolean isRevoked(VerifiedToken token) {
+        String id = token.getId();
+        if (id != null && revokedTokenFilter.mightContain(id) && revokedTokens.containsKey(id)) {
+            return true;
+        }
+        String subject = token.getSubject();
+        if (subject != null && revokedUserFilter.mightContain(subject)) {
+            Long revokedBefore = revokedUsers.get(subject);
+            return revokedBefore != null && issuedAt(token) < revokedBefore;
+        }
+        return false;
+    }
+
+    /** Revokes a single token until its own expiry. */
+    public synchronized void revoke(VerifiedToken token) {
+        if (token.getId() != null) {
+            revokedTokens.put(token.getId(), token.getExpiresAt().getTime());
+            revokedTokenFilter.put(token.getId());
+        }
+    }
+
+    /** Revokes every token issued to the user up to now, e.g. after a password change, lock or delete. */
+    public synchronized void revokeAllForUser(String username) {
+        if (username != null) {
+            revokedUsers.put(username, System.currentTimeMillis());
+            revokedUserFilter.put(username);
+        }
+    }
+
+    /**
+     *  Drops entries whose tokens have expired and rebuilds the Bloom filters from what is left, since bits can
+     *  not be removed from a filter. Filters that outgrew their sizing are rebuilt too.
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.purge-interval:PT5M}")
+    public synchronized void purgeExpired() {
+        long now = System.currentTimeMillis();
+        boolean tokensRemoved = revokedTokens.values().removeIf(expiresAt -> expiresAt <= now);
+        boolean usersRemoved = revokedUsers.values().removeIf(revokedAt -> revokedAt + ACCESS_TOKEN_EXPIRATION_TIME <= now);
+        if (tokensRemoved || revokedTokenFilter.expectedFpp() > FALSE_POSITIVE_PROBABILITY) {
+            BloomFilter<CharSequence> filter = newFilter(revokedTokens.size());
+            revokedTokens.keySet().forEach(filter::put);
+            revokedTokenFilter = filter;
+        }
+        if (usersRemoved || revokedUserFilter.expectedFpp() > FALSE_POSITIVE_PROBABILITY) {
+            BloomFilter<CharSequence> filter = newFilter(revokedUsers.size());
+            revokedUsers.keySet().forEach(filter::put);
+            revokedUserFilter = filter;
+        }
+    }
+
+    private long issuedAt(VerifiedToken token) {
+        long issuedAt = TokenId.issuedAt(token.getId());
+        return issuedAt >= 0 ? issuedAt : token.getIssuedAt();
+    }
+
+    private BloomFilter<CharSequence> newFilter(int entries) {
+        return BloomFilter.create(Funnels.unencodedCharsFunnel(), Math.max(expectedInsertions, entries * 2),
+                FALSE_POSITIVE_PROBABILITY);
+    }
+}
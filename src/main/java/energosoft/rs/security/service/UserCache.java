@@ -0,0 +1,200 @@
+package energosoft.rs.security.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import energosoft.rs.security.domain.User;
+import energosoft.rs.security.repository.UserRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Date;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Read-through near-cache of users by username, with an email index in front of it, bounded by maximum-size and
+ *  expire-after-write. Callers always get a private, detached copy, which is only for reading: a write loads the
+ *  current row from UserRepository, as the copy may be stale by up to expire-after-write. Every write of a user
+ *  is followed by invalidate, which goes through the UserCacheBus to every node, once right away and once more when
+ *  the transaction completes, so a reload that read the row before the commit does not outlive it. A load that
+ *  raced with an invalidation is not cached at all.
+ **/
+
+@Service
+public class UserCache {
+
+    private final Cache<String, User> users;               // username -> snapshot
+    private final Cache<String, String> usernamesByEmail;  // email -> username, checked against the snapshot
+    private UserRepository userRepository;
+    private UserCacheBus userCacheBus;
+    private boolean enabled;
+    private long invalidations;  // guarded by this
+
+    @Autowired
+    public UserCache(UserRepository userRepository, UserCacheBus userCacheBus, MeterRegistry meterRegistry,
+                     @Value("${user.cache.enabled:true}") boolean enabled,
+                     @Value("${user.cache.maximum-size:10000}") long maximumSize,
+                     @Value("${user.cache.expire-after-write:30s}") Duration expireAfterWrite) {
+        this.userRepository = userRepository;
+        this.userCacheBus = userCacheBus;
+        this.enabled = enabled;
+        this.users = CacheBuilder.newBuilder().maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite.toMillis(), MILLISECONDS).recordStats().build();
+        this.usernamesByEmail = CacheBuilder.newBuilder().maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite.toMillis(), MILLISECONDS).build();
+        userCacheBus.subscribe(this::evict);
+        registerMetrics(meterRegistry);
+    }
+
+    /** A copy of the user, read from the database on a miss; null when there is no such user. */
+    public User getByUsername(String username) {
+        if (username == null) {
+            return null;
+        }
+        User cached = enabled ? users.getIfPresent(username) : null;
+        if (cached != null) {
+            return copy(cached);
+        }
+        long generation = generation();
+        return load(userRepository.loadUserByUsername(username), generation);
+    }
+
+    public User getByEmail(String email) {
+        if (email == null) {
+            return null;
+        }
+        String username = enabled ? usernamesByEmail.getIfPresent(email) : null;
+        if (username != null) {
+            User user = getByUsername(username);
+            if (user != null && email.equals(user.getEmail())) {
+                return user;
+            }
+            usernamesByEmail.invalidate(email);
+        }
+        long generation = generation();
+        return load(userRepository.findUserByEmail(email), generation);
+    }
+
+    /**
+     *  Keeps a cached user's login dates in step with a login, which is not invalidated like other writes. Cached
+     *  snapshots are never changed in place, readers copy them without a lock: the dates go into a new snapshot.
+     */
+    public void updateLastLogin(User user) {
+        users.asMap().computeIfPresent(user.getUsername(), (username, cached) -> {
+            if (!cached.getId().equals(user.getId())) {
+                return cached;
+            }
+            User updated = copy(cached);
+            updated.setLastLoginDateDisplay(copyOf(user.getLastLoginDateDisplay()));
+            updated.setLastLoginDate(copyOf(user.getLastLoginDate()));
+            return updated;
+        });
+    }
+
+    public void invalidate(String username) {
+        if (username == null) {
+            return;
+        }
+        userCacheBus.publish(username);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    userCacheBus.publish(username);
+                }
+            });
+        }
+    }
+
+    public void invalidateAll(Collection<String> usernames) {
+        usernames.forEach(this::invalidate);
+    }
+
+    public long getHitCount() {
+        return users.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return users.stats().missCount();
+    }
+
+    public long getEvictionCount() {
+        return users.stats().evictionCount();
+    }
+
+    public long size() {
+        return users.size();
+    }
+
+    private User load(User user, long generation) {
+        if (user == null) {
+            return null;
+        }
+        User snapshot = copy(user);
+        if (enabled) {
+            synchronized (this) {
+                if (invalidations == generation) {
+                    users.put(snapshot.getUsername(), snapshot);
+                    if (snapshot.getEmail() != null) {
+                        usernamesByEmail.put(snapshot.getEmail(), snapshot.getUsername());
+                    }
+                }
+            }
+        }
+        return copy(snapshot);
+    }
+
+    private synchronized long generation() {
+        return invalidations;
+    }
+
+    private synchronized void evict(String username) {
+        invalidations++;
+        User cached = users.asMap().get(username);
+        if (cached != null && cached.getEmail() != null) {
+            usernamesByEmail.invalidate(cached.getEmail());
+        }
+        users.invalidate(username);
+    }
+
+    private static User copy(User user) {
+        User copy = new User();
+        copy.setId(user.getId());
+        copy.setUserId(user.getUserId());
+        copy.setFirstName(user.getFirstName());
+        copy.setLastName(user.getLastName());
+        copy.setUsername(user.getUsername());
+        copy.setPassword(user.getPassword());
+        copy.setEmail(user.getEmail());
+        copy.setProfileImageUrl(user.getProfileImageUrl());
+        copy.setLastLoginDate(copyOf(user.getLastLoginDate()));
+        copy.setLastLoginDateDisplay(copyOf(user.getLastLoginDateDisplay()));
+        copy.setJoinDate(copyOf(user.getJoinDate()));
+        copy.setRole(user.getRole());
+        copy.setAuthorities(user.getAuthorities() == null ? null : user.getAuthorities().clone());
+        copy.setActive(user.isActive());
+        copy.setNotLocked(user.isNotLocked());
+        return copy;
+    }
+
+    private static Date copyOf(Date date) {
+        return date == null ? null : new Date(date.getTime());
+    }
+
+    private void registerMetrics(MeterRegistry meterRegistry) {
+        FunctionCounter.builder("user.cache.hits", this, UserCache::getHitCount).register(meterRegistry);
+        FunctionCounter.builder("user.cache.misses", this, UserCache::getMissCount).register(meterRegistry);
+        FunctionCounter.builder("user.cache.evictions", this, UserCache::getEvictionCount).register(meterRegistry);
+        Gauge.builder("user.cache.size", this, UserCache::size).register(meterRegistry);
+    }
+}
@@ -0,0 +1,19 @@
+package energosoft.rs.security.service;
+
+import java.util.function.Consumer;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Carries UserCache invalidations, the usernames of changed users, to the cache of every node. Selected with
+ *  user.cache.bus: in-process (the default) only reaches this node's cache, a multi-node deployment plugs in an
+ *  implementation over its messaging (e.g. Redis or PostgreSQL LISTEN/NOTIFY) under another value.
+ **/
+
+public interface UserCacheBus {
+
+    /** Delivers the username to every subscriber, on this node included. */
+    void publish(String username);
+
+    void subscribe(Consumer<String> listener);
+}
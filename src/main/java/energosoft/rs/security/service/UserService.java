@@ -1,15 +1,19 @@
 package energosoft.rs.security.service;
 
 import energosoft.rs.security.domain.User;
+import energosoft.rs.security.domain.UserCursor;
+import energosoft.rs.security.enumeration.Role;
+import energosoft.rs.security.enumeration.UserSortField;
 import energosoft.rs.security.exception.domain.EmailExistException;
 import energosoft.rs.security.exception.domain.EmailNotFoundException;
 import energosoft.rs.security.exception.domain.UserNotFoundException;
 import energosoft.rs.security.exception.domain.UsernameExistException;
+import energosoft.rs.security.ui.response.UserResponse;
 import org.springframework.web.multipart.MultipartFile;
 
-import javax.mail.MessagingException;
 import java.io.IOException;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  *  @Author: Veljko Siracki
@@ -17,8 +21,11 @@ import java.util.List;
 
 public interface UserService {
 
-    User register(String firstName, String lastName, String username, String email) throws UserNotFoundException, UsernameExistException, EmailExistException, MessagingException;
-    List<User> getUsers();
+    User register(String firstName, String lastName, String username, String email) throws UserNotFoundException, UsernameExistException, EmailExistException;
+    List<UserResponse> getUsers(UserSortField sort, boolean descending, UserCursor after, Role role, String authority, int size);
+    void streamUsers(UserSortField sort, boolean descending, Consumer<UserResponse> consumer);
+    List<UserResponse> searchUsers(String prefix, int limit);
+    UserResponse getUser(String username);
     User findUserByUsername(String username);
     User findUserByEmail(String email);
 
@@ -33,7 +40,7 @@ public interface UserService {
                     boolean isActive, MultipartFile profileImage) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException;
 
     void deleteUser(String  username);
-    void resetPassword(String email) throws EmailNotFoundException, MessagingException;
+    void resetPassword(String email) throws EmailNotFoundException;
     User updateProfileImage(String username, MultipartFile profileImage) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException;
 
     void changePassword(String username, String password) throws IOException;
@@ -0,0 +1,42 @@
+package energosoft.rs.security.service.impl;
+
+import energosoft.rs.security.service.LoginAttemptStore;
+import energosoft.rs.security.utilty.SlidingWindowAttemptCounter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/**
+ *  @Author: Veljko Siracki
+ **/
+
+@Service
+@ConditionalOnProperty(name = "login.attempts.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryLoginAttemptStore implements LoginAttemptStore {
+
+    private SlidingWindowAttemptCounter loginAttemptCounter;
+
+    @Autowired
+    public InMemoryLoginAttemptStore(@Value("${login.attempts.capacity:1048576}") int capacity,
+                                     @Value("${login.attempts.window:15m}") Duration window) {
+        this.loginAttemptCounter = new SlidingWindowAttemptCounter(capacity, window);
+    }
+
+    @Override
+    public int increment(String username, long now) {
+        return loginAttemptCounter.increment(username, now);
+    }
+
+    @Override
+    public int count(String username, long now) {
+        return loginAttemptCounter.count(username, now);
+    }
+
+    @Override
+    public void reset(String username) {
+        loginAttemptCounter.reset(username);
+    }
+}
@@ -0,0 +1,30 @@
+package energosoft.rs.security.service.impl;
+
+import energosoft.rs.security.service.UserCacheBus;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ *  @Author: Veljko Siracki
+ **/
+
+@Service
+@ConditionalOnProperty(name = "user.cache.bus", havingValue = "in-process", matchIfMissing = true)
+public class InProcessUserCacheBus implements UserCacheBus {
+
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(String username) {
+        listeners.forEach(listener -> listener.accept(username));
+    }
+
+    @Override
+    public void subscribe(Consumer<String> listener) {
+        listeners.add(listener);
+    }
+}
@@ -0,0 +1,197 @@
+package energosoft.rs.security.service.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import energosoft.rs.security.service.LoginAttemptStore;
+import energosoft.rs.security.utilty.SlidingWindowAttemptCounter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Failed login counters shared by every node through the login_attempt table. Failed logins are summed locally
+ *  and written as one batch of atomic upserts per flush-interval (ON CONFLICT on PostgreSQL, MERGE elsewhere,
+ *  e.g. H2). Reads go through a near-cache, so a login costs at most one SELECT per username per near-cache-ttl
+ *  and a failed login costs no round trip of its own. Other nodes see an attempt after at most
+ *  flush-interval + near-cache-ttl.
+ **/
+
+@Service
+@ConditionalOnProperty(name = "login.attempts.store", havingValue = "jdbc")
+public class JdbcLoginAttemptStore implements LoginAttemptStore {
+
+    private static final String SELECT_ATTEMPTS =
+            "select window_index, previous_count, current_count from login_attempt where user_key = ?";
+    private static final String DELETE_ATTEMPTS = "delete from login_attempt where user_key = ?";
+    private static final String PURGE_ATTEMPTS = "delete from login_attempt where window_index < ?";
+    // the row moves to the newer window of the two, the right-hand sides all read the row as it was before
+    private static final String UPSERT_ATTEMPTS_POSTGRESQL =
+            "insert into login_attempt (user_key, window_index, previous_count, current_count) values (?, ?, 0, ?) "
+            + "on conflict (user_key) do update set "
+            + "previous_count = case when login_attempt.window_index >= excluded.window_index then login_attempt.previous_count "
+            + "when login_attempt.window_index = excluded.window_index - 1 then login_attempt.current_count else 0 end, "
+            + "current_count = case when login_attempt.window_index >= excluded.window_index "
+            + "then login_attempt.current_count + excluded.current_count else excluded.current_count end, "
+            + "window_index = greatest(login_attempt.window_index, excluded.window_index)";
+    private static final String UPSERT_ATTEMPTS_MERGE =
+            "merge into login_attempt a using (select cast(? as bigint) user_key, cast(? as int) window_index, "
+            + "cast(? as int) attempts) s on a.user_key = s.user_key "
+            + "when matched then update set "
+            + "previous_count = case when a.window_index >= s.window_index then a.previous_count "
+            + "when a.window_index = s.window_index - 1 then a.current_count else 0 end, "
+            + "current_count = case when a.window_index >= s.window_index then a.current_count + s.attempts else s.attempts end, "
+            + "window_index = greatest(a.window_index, s.window_index) "
+            + "when not matched then insert (user_key, window_index, previous_count, current_count) "
+            + "values (s.user_key, s.window_index, 0, s.attempts)";
+    private static final Attempts NO_ATTEMPTS = new Attempts(0, 0, 0);
+
+    private Logger LOGGER = LoggerFactory.getLogger(getClass());
+    private final HashFunction hashFunction = Hashing.sipHash24();  // fixed key, every node must agree on it
+    private final Map<Long, Integer> pendingAttempts = new ConcurrentHashMap<>();
+    private final Set<Long> pendingResets = ConcurrentHashMap.newKeySet();
+    private final Cache<Long, Attempts> nearCache;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private long windowMillis;
+    private String upsertAttempts;
+
+    @Autowired
+    public JdbcLoginAttemptStore(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                 @Value("${login.attempts.window:15m}") Duration window,
+                                 @Value("${login.attempts.jdbc.near-cache-ttl:1s}") Duration nearCacheTtl,
+                                 @Value("${login.attempts.jdbc.near-cache-size:100000}") long nearCacheSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.windowMillis = Math.max(1, window.toMillis());
+        this.nearCache = CacheBuilder.newBuilder().maximumSize(nearCacheSize)
+                .expireAfterWrite(nearCacheTtl.toMillis(), MILLISECONDS).build();
+        String databaseProductName = jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        this.upsertAttempts = "PostgreSQL".equalsIgnoreCase(databaseProductName)
+                ? UPSERT_ATTEMPTS_POSTGRESQL : UPSERT_ATTEMPTS_MERGE;
+    }
+
+    @Override
+    public int increment(String username, long now) {
+        long key = key(username);
+        pendingAttempts.merge(key, 1, Integer::sum);
+        return count(key, now);
+    }
+
+    @Override
+    public int count(String username, long now) {
+        return count(key(username), now);
+    }
+
+    @Override
+    public void reset(String username) {
+        long key = key(username);
+        pendingResets.add(key);
+        pendingAttempts.remove(key);
+    }
+
+    /** Writes the pending resets and attempts in one transaction, then drops them from the near-cache. */
+    @Scheduled(fixedDelayString = "${login.attempts.jdbc.flush-interval:PT0.2S}")
+    public synchronized void flush() {
+        if (pendingResets.isEmpty() && pendingAttempts.isEmpty()) {
+            return;
+        }
+        List<Long> resets = new ArrayList<>(pendingResets);
+        Map<Long, Integer> attempts = new HashMap<>(pendingAttempts);
+        int window = (int) (System.currentTimeMillis() / windowMillis);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(DELETE_ATTEMPTS, toBatch(resets));
+                List<Object[]> upserts = new ArrayList<>(attempts.size());
+                attempts.forEach((key, count) -> upserts.add(new Object[] { key, window, count }));
+                jdbcTemplate.batchUpdate(upsertAttempts, upserts);
+            });
+        } catch (DataAccessException exception) {
+            LOGGER.error("Could not write login attempts: " + exception.getMessage());
+            return;
+        }
+        pendingResets.removeAll(resets);
+        // invalidate before subtracting, so a concurrent count over-counts rather than misses the written attempts
+        nearCache.invalidateAll(resets);
+        nearCache.invalidateAll(attempts.keySet());
+        attempts.forEach((key, count) -> pendingAttempts.computeIfPresent(key,
+                (pendingKey, pending) -> pending - count == 0 ? null : pending - count));
+    }
+
+    @Scheduled(fixedDelayString = "${login.attempts.jdbc.purge-interval:PT15M}")
+    public void purgeExpired() {
+        int window = (int) (System.currentTimeMillis() / windowMillis);
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(PURGE_ATTEMPTS, window - 1));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private int count(long key, long now) {
+        int pending = pendingAttempts.getOrDefault(key, 0);
+        if (pendingResets.contains(key)) {
+            return pending;  // the stored row is about to be deleted
+        }
+        Attempts attempts;
+        try {
+            attempts = nearCache.get(key, () -> load(key));
+        } catch (ExecutionException exception) {
+            LOGGER.error("Could not read login attempts: " + exception.getCause().getMessage());
+            return pending;
+        }
+        return pending + SlidingWindowAttemptCounter.estimate(windowMillis, attempts.windowIndex,
+                attempts.previousCount, attempts.currentCount, now);
+    }
+
+    private Attempts load(long key) {
+        return jdbcTemplate.query(SELECT_ATTEMPTS, resultSet -> resultSet.next()
+                ? new Attempts(resultSet.getInt(1), resultSet.getInt(2), resultSet.getInt(3)) : NO_ATTEMPTS, key);
+    }
+
+    private long key(String username) {
+        return hashFunction.hashString(username, StandardCharsets.UTF_8).asLong();
+    }
+
+    private static List<Object[]> toBatch(Collection<Long> keys) {
+        List<Object[]> batch = new ArrayList<>(keys.size());
+        keys.forEach(key -> batch.add(new Object[] { key }));
+        return batch;
+    }
+
+    private static final class Attempts {
+
+        private final int windowIndex;
+        private final int previousCount;
+        private final int currentCount;
+
+        private Attempts(int windowIndex, int previousCount, int currentCount) {
+            this.windowIndex = windowIndex;
+            this.previousCount = previousCount;
+            this.currentCount = currentCount;
+        }
+    }
+}
@@ -1,40 +1,58 @@
 package energosoft.rs.security.service.impl;
 
 import energosoft.rs.security.domain.User;
+import energosoft.rs.security.domain.UserCursor;
 import energosoft.rs.security.domain.UserPrincipal;
 import energosoft.rs.security.enumeration.Role;
+import energosoft.rs.security.enumeration.UserSortField;
 import energosoft.rs.security.exception.domain.EmailExistException;
 import energosoft.rs.security.exception.domain.EmailNotFoundException;
 import energosoft.rs.security.exception.domain.UserNotFoundException;
 import energosoft.rs.security.exception.domain.UsernameExistException;
 import energosoft.rs.security.repository.UserRepository;
-import energosoft.rs.security.service.EmailService;
+import energosoft.rs.security.service.EmailOutboxService;
+import energosoft.rs.security.service.LastLoginService;
 import energosoft.rs.security.service.LoginAttemptService;
+import energosoft.rs.security.service.RefreshTokenService;
+import energosoft.rs.security.service.TokenRevocationService;
+import energosoft.rs.security.service.UserCache;
 import energosoft.rs.security.service.UserService;
+import energosoft.rs.security.ui.response.UserResponse;
+import energosoft.rs.security.utilty.UserIdGenerator;
 import org.apache.commons.lang3.RandomStringUtils;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.authentication.LockedException;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
-import javax.mail.MessagingException;
-import javax.transaction.Transactional;
+import javax.persistence.EntityManager;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
+import static energosoft.rs.security.constant.EmailConstant.ACCOUNT_LOCKED_TEMPLATE;
+import static energosoft.rs.security.constant.EmailConstant.NEW_PASSWORD_TEMPLATE;
+import static energosoft.rs.security.constant.EmailConstant.WELCOME_TEMPLATE;
 import static energosoft.rs.security.constant.FileConstant.*;
 import static energosoft.rs.security.constant.SecurityConstant.*;
 import static java.nio.file.Files.*;
@@ -48,43 +66,90 @@ import static org.apache.commons.lang3.StringUtils.*;
 @Service
 @Transactional
 @Qualifier("userDetailsService")
-public class UserServiceImpl implements UserService, UserDetailsService {
+public class UserServiceImpl implements UserService, UserDetailsService, UserDetailsPasswordService {
 
     private Logger LOGGER = LoggerFactory.getLogger(getClass());
     private UserRepository userRepository;
-    private BCryptPasswordEncoder bCryptPasswordEncoder;
+    private PasswordEncoder passwordEncoder;
     private LoginAttemptService loginAttemptService;
-    private EmailService emailService;
+    private EmailOutboxService emailOutboxService;
+    private TokenRevocationService tokenRevocationService;
+    private RefreshTokenService refreshTokenService;
+    private LastLoginService lastLoginService;
+    private UserCache userCache;
+    private UserIdGenerator userIdGenerator;
+    private EntityManager entityManager;
+    private int streamFetchSize;
 
     @Autowired
-    public UserServiceImpl(UserRepository userRepository, BCryptPasswordEncoder bCryptPasswordEncoder, LoginAttemptService loginAttemptService, EmailService emailService) {
+    public UserServiceImpl(UserRepository userRepository, PasswordEncoder passwordEncoder, LoginAttemptService loginAttemptService,
+                           EmailOutboxService emailOutboxService, TokenRevocationService tokenRevocationService, RefreshTokenService refreshTokenService,
+                           LastLoginService lastLoginService, UserCache userCache, UserIdGenerator userIdGenerator, EntityManager entityManager,
+                           @Value("${user.list.stream-fetch-size:500}") int streamFetchSize) {
         this.userRepository = userRepository;
-        this.bCryptPasswordEncoder = bCryptPasswordEncoder;
+        this.passwordEncoder = passwordEncoder;
         this.loginAttemptService = loginAttemptService;
-        this.emailService = emailService;
+        this.emailOutboxService = emailOutboxService;
+        this.tokenRevocationService = tokenRevocationService;
+        this.refreshTokenService = refreshTokenService;
+        this.lastLoginService = lastLoginService;
+        this.userCache = userCache;
+        this.userIdGenerator = userIdGenerator;
+        this.entityManager = entityManager;
+        this.streamFetchSize = streamFetchSize;
     }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findUserByUsername(username);
+        User user = userCache.getByUsername(username);
                 if (user == null) {
                    LOGGER.error(USER_NOT_FOUND_BY_USERNAME + username);
                    throw new UsernameNotFoundException("User not found by username:" + username);
                 } else {
+                    boolean notLocked = user.isNotLocked();
                     validateLoginAttempt(user);
-                    user.setLastLoginDateDisplay(user.getLastLoginDate());
-                    user.setLastLoginDate(new Date());
-                    userRepository.save(user);
+                    if (user.isNotLocked() != notLocked) {
+                        // only the lock changes, on the current row: the cached copy may be stale
+                        User current = userRepository.findUserByUsername(username);
+                        if (current != null) {
+                            current.setNotLocked(user.isNotLocked());
+                            userRepository.save(current);
+                        }
+                        userCache.invalidate(username);
+                        if (!user.isNotLocked()) {
+                            sendAccountLockedEmail(user);
+                        }
+                    }
+                    lastLoginService.recordLogin(user, new Date());
+                    userCache.updateLastLogin(lastLoginService.applyPending(user));
                     UserPrincipal userPrincipal = new UserPrincipal(user);
                     LOGGER.info("Returning found user by username: " + username);
                     return userPrincipal;
                 }
     }
 
+    /**
+     *  Called by the AuthenticationManager after a successful login when the stored hash is outdated (another
+     *  algorithm or a lower BCrypt strength); newPassword is the same password encoded with the current settings.
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        User user = userRepository.findUserByUsername(userDetails.getUsername());
+        if (user == null) {
+            return userDetails;
+        }
+        user.setPassword(newPassword);
+        userRepository.save(user);
+        userCache.invalidate(user.getUsername());
+        LOGGER.info("Upgraded password hash of user: " + user.getUsername());
+        return new UserPrincipal(user);
+    }
+
     private void validateLoginAttempt(User user)  {
         if (user.isNotLocked()) {
            if(loginAttemptService.hasExceededMaxAttempts(user.getUsername())) {
                user.setNotLocked(false); // user is locked exceeded 5 attempts
+               revokeTokens(user.getUsername());
            } else {
                user.setNotLocked(true);
            }
@@ -95,10 +160,11 @@ public class UserServiceImpl implements UserService, UserDetailsService {
 
 
     @Override
-    public User register(String firstName, String lastName, String username, String email) throws UserNotFoundException, UsernameExistException, EmailExistException, MessagingException {
+    @Transactional(rollbackFor = { UsernameExistException.class, EmailExistException.class })
+    public User register(String firstName, String lastName, String username, String email) throws UserNotFoundException, UsernameExistException, EmailExistException {
         validateNewUsernameAndEmail(EMPTY, username, email);
         User user = new User();
-        user.setUserId(generateUserId());
+        user.setUserId(userIdGenerator.next());
         String password = generatePassword();
         user.setFirstName(firstName);;
         user.setLastName(lastName);
@@ -113,18 +179,19 @@ public class UserServiceImpl implements UserService, UserDetailsService {
         user.setRole(Role.ROLE_SUPER_ADMIN.name());
         user.setAuthorities(Role.ROLE_SUPER_ADMIN.getAuthorities());
         user.setProfileImageUrl(getTemporaryProfileImageUrl(username));
-        userRepository.save(user);
+        saveUniqueUser(user);
         LOGGER.info("New user password: " + password);
-        emailService.sendNewPasswordEmail(firstName, password, email);
+        sendWelcomeEmail(user, password);
         return user;
     }
 
     @Override
+    @Transactional(rollbackFor = { UsernameExistException.class, EmailExistException.class })
     public User addNewUser(String firstName, String lastName, String username, String email, String role, boolean isNonLocked, boolean isActive, MultipartFile profileImage) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException {
         validateNewUsernameAndEmail(EMPTY, username, email);
         User user = new User();
         String password = generatePassword();
-        user.setUserId(generateUserId());
+        user.setUserId(userIdGenerator.next());
         user.setFirstName(firstName);
         user.setLastName(lastName);
         user.setJoinDate(new Date());
@@ -136,7 +203,7 @@ public class UserServiceImpl implements UserService, UserDetailsService {
         user.setRole(getRoleEnumName(role).name());
         user.setAuthorities(getRoleEnumName(role).getAuthorities());
         user.setProfileImageUrl(getTemporaryProfileImageUrl(username));
-        userRepository.save(user);
+        saveUniqueUser(user);
         saveProfileImage(user, profileImage);
         return user;
     }
@@ -144,6 +211,7 @@ public class UserServiceImpl implements UserService, UserDetailsService {
 
 
     @Override
+    @Transactional(rollbackFor = { UsernameExistException.class, EmailExistException.class })
     public User updateUser(String currentUsername, String newFirstName, String newLastName, String newUsername, String newEmail, String role, boolean isNonLocked, boolean isActive, MultipartFile profileImage) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException {
         User currentUser = validateNewUsernameAndEmail(currentUsername, newUsername, newEmail);
         currentUser.setFirstName(newFirstName);
@@ -154,18 +222,23 @@ public class UserServiceImpl implements UserService, UserDetailsService {
         currentUser.setNotLocked(isNonLocked);
         currentUser.setRole(getRoleEnumName(role).name());
         currentUser.setAuthorities(getRoleEnumName(role).getAuthorities());
-        userRepository.save(currentUser);
+        saveUniqueUser(currentUser);
+        revokeTokens(currentUsername);
         saveProfileImage(currentUser, profileImage);
+        userCache.invalidate(currentUsername);
+        userCache.invalidate(newUsername);
         return currentUser;
     }
 
     @Override
     public void deleteUser(String username) {
         userRepository.deleteByUsername(username);
+        revokeTokens(username);
+        userCache.invalidate(username);
     }
 
     @Override
-    public void resetPassword(String email) throws EmailNotFoundException, MessagingException {
+    public void resetPassword(String email) throws EmailNotFoundException {
         User user = userRepository.findUserByEmail(email);
         if ( user == null) {
             throw new EmailNotFoundException(NO_USER_FOUND_BY_EMAIL + email);
@@ -173,13 +246,16 @@ public class UserServiceImpl implements UserService, UserDetailsService {
         String password = generatePassword();
         user.setPassword(encodePassword(password));
         userRepository.save(user);
-        emailService.sendNewPasswordEmail(user.getFirstName(), password, user.getEmail());
+        userCache.invalidate(user.getUsername());
+        revokeTokens(user.getUsername());
+        sendNewPasswordEmail(user.getFirstName(), password, user.getEmail());
     }
 
     @Override
     public User updateProfileImage(String username, MultipartFile profileImage) throws UserNotFoundException, UsernameExistException, EmailExistException, IOException {
         User user = validateNewUsernameAndEmail(username, null , null);
         saveProfileImage(user, profileImage);
+        userCache.invalidate(username);
         return user;
     }
 
@@ -189,24 +265,69 @@ public class UserServiceImpl implements UserService, UserDetailsService {
         if(foundUser.isNotLocked()) {
             foundUser.setPassword(encodePassword(password));
             userRepository.save(foundUser);
+            userCache.invalidate(username);
+            revokeTokens(username);
         } else {
             throw new LockedException(USER_LOCKED);
         }
     }
 
     @Override
-    public List<User> getUsers() {
-        return userRepository.findAll();
+    @Transactional(readOnly = true)
+    public List<UserResponse> getUsers(UserSortField sort, boolean descending, UserCursor after, Role role, String authority, int size) {
+        List<UserResponse> users = userRepository.findPage(sort, descending, after, role, authority, size);
+        users.forEach(lastLoginService::applyPending);
+        return users;
+    }
+
+    /** Hands every user to the consumer inside one read-only transaction; projections keep memory flat. */
+    @Override
+    @Transactional(readOnly = true)
+    public void streamUsers(UserSortField sort, boolean descending, Consumer<UserResponse> consumer) {
+        try (Stream<UserResponse> users = userRepository.streamAll(sort, descending, streamFetchSize)) {
+            users.forEach(user -> consumer.accept(lastLoginService.applyPending(user)));
+        }
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public List<UserResponse> searchUsers(String prefix, int limit) {
+        List<UserResponse> users = userRepository.search(prefix, limit);
+        users.forEach(lastLoginService::applyPending);
+        return users;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public UserResponse getUser(String username) {
+        User user = userCache.getByUsername(username);
+        return user == null ? null : UserResponse.of(lastLoginService.applyPending(user));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public User findUserByUsername(String username) {
-        return userRepository.findUserByUsername(username);
+        User user = userCache.getByUsername(username);
+        return user == null ? null : lastLoginService.applyPending(user);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public User findUserByEmail(String email) {
-        return userRepository.findUserByEmail(email);
+        return userCache.getByEmail(email);
+    }
+
+    private void applyPendingLogin(User user) {
+        if (lastLoginService.hasPending(user)) {
+            // detached, so the unwritten login dates are not flushed back synchronously
+            entityManager.detach(user);
+            lastLoginService.applyPending(user);
+        }
+    }
+
+    private void revokeTokens(String username) {
+        tokenRevocationService.revokeAllForUser(username);
+        refreshTokenService.revokeAllForUser(username);
     }
 
     private String getTemporaryProfileImageUrl(String username) {
@@ -214,26 +335,58 @@ public class UserServiceImpl implements UserService, UserDetailsService {
     }
 
     private String encodePassword(String password) {
-        return  this.bCryptPasswordEncoder.encode(password);
+        return  this.passwordEncoder.encode(password);
     }
 
-    private String generatePassword() {
-        return RandomStringUtils.randomAlphanumeric(10);
+    // emails are queued in the caller's transaction, EmailOutboxService delivers them after the commit
+    private void sendNewPasswordEmail(String firstName, String password, String email) {
+        Map<String, String> model = new HashMap<>();
+        model.put("firstName", firstName);
+        model.put("password", password);
+        emailOutboxService.enqueue(NEW_PASSWORD_TEMPLATE, email, model);
+    }
+
+    private void sendWelcomeEmail(User user, String password) {
+        Map<String, String> model = new HashMap<>();
+        model.put("firstName", user.getFirstName());
+        model.put("username", user.getUsername());
+        model.put("password", password);
+        emailOutboxService.enqueue(WELCOME_TEMPLATE, user.getEmail(), model);
     }
 
-    private String generateUserId() {
-        return RandomStringUtils.randomNumeric(10);
+    private void sendAccountLockedEmail(User user) {
+        Map<String, String> model = new HashMap<>();
+        model.put("firstName", user.getFirstName());
+        model.put("username", user.getUsername());
+        emailOutboxService.enqueue(ACCOUNT_LOCKED_TEMPLATE, user.getEmail(), model);
     }
 
+    private String generatePassword() {
+        return RandomStringUtils.randomAlphanumeric(10);
+    }
+
+    // a fast, friendly check; the unique indexes behind saveUniqueUser settle a race between two requests
     private User validateNewUsernameAndEmail(String currentUsername, String newUsername, String newEmail ) throws UserNotFoundException, EmailExistException, UsernameExistException {
-        User userByNewUsername = findUserByUsername(newUsername);
-        User userByNewEmail = findUserByEmail(newEmail);
+        User currentUser = null;
+        User userByNewUsername = null;
+        User userByNewEmail = null;
+        for (User user : userRepository.findUsernameAndEmailOwners(currentUsername, newUsername, newEmail)) {
+            if (user.getUsername().equals(currentUsername)) {
+                currentUser = user;
+            }
+            if (user.getUsername().equals(newUsername)) {
+                userByNewUsername = user;
+            }
+            if (newEmail != null && newEmail.equals(user.getEmail())) {
+                userByNewEmail = user;
+            }
+        }
 
         if (isNotBlank(currentUsername)) {
-           User currentUser = findUserByUsername(currentUsername);
            if( currentUser == null) {
                throw new UserNotFoundException(USER_NOT_FOUND_BY_USERNAME + currentUsername);
            }
+           applyPendingLogin(currentUser);
            if(userByNewUsername != null && !currentUser.getId().equals(userByNewUsername.getId())) {
                throw new UsernameExistException(USERNAME_ALREADY_EXISTS);
            }
@@ -252,6 +405,22 @@ public class UserServiceImpl implements UserService, UserDetailsService {
         }
     }
 
+    /** Inserts or updates the user right away, so a username or email taken meanwhile surfaces as its domain exception. */
+    private void saveUniqueUser(User user) throws UsernameExistException, EmailExistException {
+        try {
+            userRepository.saveAndFlush(user);
+        } catch (DataIntegrityViolationException exception) {
+            String violation = String.valueOf(exception.getMostSpecificCause().getMessage()).toLowerCase();
+            if (violation.contains(USERNAME_UNIQUE_INDEX)) {
+                throw new UsernameExistException(USERNAME_ALREADY_EXISTS);
+            }
+            if (violation.contains(EMAIL_UNIQUE_INDEX)) {
+                throw new EmailExistException(EMAIL_ALREADY_EXISTS);
+            }
+            throw exception;
+        }
+    }
+
     private void saveProfileImage(User user, MultipartFile profileImage) throws IOException {
         if ( profileImage != null) {
            Path userFolder = Paths.get(USER_FOLDER + user.getUsername()).toAbsolutePath().normalize();
@@ -0,0 +1,12 @@
+package energosoft.rs.security.ui.request;
+
+import lombok.Data;
+
+@Data
+public class BulkPasswordResetRequestModel {
+
+    private String role;  // null selects every role
+    private Boolean locked;  // null selects locked and unlocked users
+    private boolean sendEmail = true;
+
+}
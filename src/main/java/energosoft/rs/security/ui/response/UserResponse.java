@@ -0,0 +1,62 @@
+package energosoft.rs.security.ui.response;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import energosoft.rs.security.domain.User;
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Read-only view of a User for the list, find and search responses. Lists and searches select it straight from
+ *  UserRepository: no password hash is fetched and nothing enters the persistence context. /user/find builds it
+ *  from the UserCache copy. Serializes like User.
+ **/
+
+@Data
+public class UserResponse {
+
+    @JsonIgnore
+    private Long id;
+    private String userId;
+    private String firstName;
+    private String lastName;
+    private String username;
+    private String email;
+    private String profileImageUrl;
+    private Date lastLoginDate;
+    private Date lastLoginDateDisplay;
+    private Date joinDate;
+    private String role;
+    private String[] authorities;
+    private boolean notLocked;
+    private boolean active;
+
+    // argument order of UserRepository.SELECT_USER_RESPONSE
+    public UserResponse(Long id, String userId, String firstName, String lastName, String username, String email,
+                        String profileImageUrl, Date lastLoginDate, Date lastLoginDateDisplay, Date joinDate,
+                        String role, String[] authorities, boolean notLocked, boolean active) {
+        this.id = id;
+        this.userId = userId;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.username = username;
+        this.email = email;
+        this.profileImageUrl = profileImageUrl;
+        this.lastLoginDate = lastLoginDate;
+        this.lastLoginDateDisplay = lastLoginDateDisplay;
+        this.joinDate = joinDate;
+        this.role = role;
+        this.authorities = authorities;
+        this.notLocked = notLocked;
+        this.active = active;
+    }
+
+    public static UserResponse of(User user) {
+        return new UserResponse(user.getId(), user.getUserId(), user.getFirstName(), user.getLastName(),
+                user.getUsername(), user.getEmail(), user.getProfileImageUrl(), user.getLastLoginDate(),
+                user.getLastLoginDateDisplay(), user.getJoinDate(), user.getRole(), user.getAuthorities(),
+                user.isNotLocked(), user.isActive());
+    }
+}
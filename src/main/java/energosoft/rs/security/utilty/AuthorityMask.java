@@ -0,0 +1,119 @@
+package energosoft.rs.security.utilty;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.*;
+
+import static energosoft.rs.security.constant.Authority.AUTHORITY_BITS;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Maps authority sets to the compact bitmask defined by Authority.AUTHORITY_BITS and back. Every possible mask
+ *  has one interned, unmodifiable GrantedAuthority list, so decoding is an array lookup with no allocation. The
+ *  mask is also how User stores its authorities, see AuthorityMaskConverter.
+ **/
+
+public final class AuthorityMask {
+
+    public static final int UNKNOWN = -1;
+
+    private static final Map<String, Integer> BITS = new HashMap<>();
+    private static final List<GrantedAuthority>[] GRANTED_AUTHORITIES;
+    private static final String[][] NAMES;
+
+    static {
+        GrantedAuthority[] authorities = new GrantedAuthority[AUTHORITY_BITS.length];
+        for (int bit = 0; bit < AUTHORITY_BITS.length; bit++) {
+            BITS.put(AUTHORITY_BITS[bit], bit);
+            authorities[bit] = new SimpleGrantedAuthority(AUTHORITY_BITS[bit]);
+        }
+        @SuppressWarnings("unchecked")
+        List<GrantedAuthority>[] table = new List[1 << AUTHORITY_BITS.length];
+        String[][] names = new String[table.length][];
+        for (int mask = 0; mask < table.length; mask++) {
+            List<GrantedAuthority> granted = new ArrayList<>(Integer.bitCount(mask));
+            names[mask] = new String[Integer.bitCount(mask)];
+            for (int bit = 0; bit < AUTHORITY_BITS.length; bit++) {
+                if ((mask & (1 << bit)) != 0) {
+                    names[mask][granted.size()] = AUTHORITY_BITS[bit];
+                    granted.add(authorities[bit]);
+                }
+            }
+            table[mask] = Collections.unmodifiableList(granted);
+        }
+        GRANTED_AUTHORITIES = table;
+        NAMES = names;
+    }
+
+    private AuthorityMask() {
+    }
+
+    /** Returns the mask of the given authority names, or UNKNOWN if one of them has no bit assigned. */
+    public static int encode(String[] authorities) {
+        int mask = 0;
+        for (String authority : authorities) {
+            Integer bit = BITS.get(authority);
+            if (bit == null) {
+                return UNKNOWN;
+            }
+            mask |= 1 << bit;
+        }
+        return mask;
+    }
+
+    public static int encode(Collection<? extends GrantedAuthority> authorities) {
+        int mask = 0;
+        for (GrantedAuthority authority : authorities) {
+            Integer bit = BITS.get(authority.getAuthority());
+            if (bit == null) {
+                return UNKNOWN;
+            }
+            mask |= 1 << bit;
+        }
+        return mask;
+    }
+
+    public static boolean isValid(int mask) {
+        return mask >= 0 && mask < GRANTED_AUTHORITIES.length;
+    }
+
+    /** Shared, unmodifiable authorities of a valid mask. */
+    public static List<GrantedAuthority> toGrantedAuthorities(int mask) {
+        return GRANTED_AUTHORITIES[mask];
+    }
+
+    /** The authority names of a valid mask in bit order, as a new array the caller may keep. */
+    public static String[] toNames(int mask) {
+        return NAMES[mask].clone();
+    }
+
+    /** Every mask that grants the authority, empty when it has no bit assigned. */
+    public static List<Integer> masksWith(String authority) {
+        Integer bit = BITS.get(authority);
+        if (bit == null) {
+            return Collections.emptyList();
+        }
+        List<Integer> masks = new ArrayList<>(NAMES.length / 2);
+        for (int mask = 0; mask < NAMES.length; mask++) {
+            if ((mask & (1 << bit)) != 0) {
+                masks.add(mask);
+            }
+        }
+        return masks;
+    }
+
+    /** Shared list when every name has a bit, a freshly built unmodifiable list otherwise. */
+    public static List<GrantedAuthority> toGrantedAuthorities(String[] authorities) {
+        int mask = encode(authorities);
+        if (mask != UNKNOWN) {
+            return GRANTED_AUTHORITIES[mask];
+        }
+        List<GrantedAuthority> granted = new ArrayList<>(authorities.length);
+        for (String authority : authorities) {
+            granted.add(new SimpleGrantedAuthority(authority));
+        }
+        return Collections.unmodifiableList(granted);
+    }
+}
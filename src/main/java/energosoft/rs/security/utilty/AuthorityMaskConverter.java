@@ -0,0 +1,38 @@
+package energosoft.rs.security.utilty;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Stores User.authorities as one int column holding their AuthorityMask instead of a serialized array, so loading a
+ *  user decodes an int and the database can filter on the authorities.
+ **/
+
+@Converter
+public class AuthorityMaskConverter implements AttributeConverter<String[], Integer> {
+
+    @Override
+    public Integer convertToDatabaseColumn(String[] authorities) {
+        if (authorities == null) {
+            return null;
+        }
+        int mask = AuthorityMask.encode(authorities);
+        if (mask == AuthorityMask.UNKNOWN) {
+            throw new IllegalArgumentException("Authorities without an AuthorityMask bit cannot be stored");
+        }
+        return mask;
+    }
+
+    @Override
+    public String[] convertToEntityAttribute(Integer mask) {
+        if (mask == null) {
+            return null;
+        }
+        if (!AuthorityMask.isValid(mask)) {
+            throw new IllegalArgumentException("Invalid authority mask " + mask);
+        }
+        return AuthorityMask.toNames(mask);
+    }
+}
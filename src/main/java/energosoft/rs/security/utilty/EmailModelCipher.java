@@ -0,0 +1,71 @@
+package energosoft.rs.security.utilty;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  AES-GCM for the email_outbox model column, which may carry a generated password. A value is the base64 of a
+ *  random 12-byte nonce followed by the ciphertext and its tag, so a changed or foreign value fails to decrypt.
+ **/
+
+public final class EmailModelCipher {
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int NONCE_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+
+    private final SecretKeySpec key;
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    /** key: 16, 24 or 32 bytes. */
+    public EmailModelCipher(byte[] key) {
+        if (key.length != 16 && key.length != 24 && key.length != 32) {
+            throw new IllegalArgumentException("AES key must be 16, 24 or 32 bytes, was " + key.length);
+        }
+        this.key = new SecretKeySpec(key, "AES");
+    }
+
+    public static EmailModelCipher withRandomKey() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return new EmailModelCipher(key);
+    }
+
+    public String encrypt(String plaintext) {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        secureRandom.nextBytes(nonce);
+        try {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, nonce));
+            byte[] ciphertext = cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(ByteBuffer.allocate(NONCE_LENGTH + ciphertext.length)
+                    .put(nonce).put(ciphertext).array());
+        } catch (GeneralSecurityException exception) {
+            throw new IllegalStateException("Cannot encrypt email model", exception);
+        }
+    }
+
+    /** Throws GeneralSecurityException when the value was changed or encrypted with another key. */
+    public String decrypt(String encrypted) throws GeneralSecurityException {
+        byte[] bytes;
+        try {
+            bytes = Base64.getDecoder().decode(encrypted);
+        } catch (IllegalArgumentException exception) {
+            throw new GeneralSecurityException("Email model is not base64", exception);
+        }
+        if (bytes.length <= NONCE_LENGTH) {
+            throw new GeneralSecurityException("Email model is too short");
+        }
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, bytes, 0, NONCE_LENGTH));
+        return new String(cipher.doFinal(bytes, NONCE_LENGTH, bytes.length - NONCE_LENGTH), StandardCharsets.UTF_8);
+    }
+}
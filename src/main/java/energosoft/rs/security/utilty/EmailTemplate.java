@@ -0,0 +1,111 @@
+package energosoft.rs.security.utilty;
+
+import org.springframework.web.util.HtmlUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  An email template parsed once into segments: runs of static text kept as pre-encoded UTF-8 bytes, and the
+ *  names of the {{variables}} between them. Variables found in the globals passed to compile are resolved right
+ *  away and become static text, so rendering only looks up the per-message values and copies bytes into a
+ *  per-thread buffer that is reused across renders. HTML templates escape every value.
+ **/
+
+public final class EmailTemplate {
+
+    private static final Pattern VARIABLE = Pattern.compile("\\{\\{\\s*([A-Za-z0-9_]+)\\s*}}");
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+    private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+    private static final ThreadLocal<ByteArrayOutputStream> BUFFER =
+            ThreadLocal.withInitial(() -> new ByteArrayOutputStream(INITIAL_BUFFER_SIZE));
+
+    private final Object[] segments;  // byte[] for static text, String for a variable name
+    private final boolean html;
+
+    private EmailTemplate(Object[] segments, boolean html) {
+        this.segments = segments;
+        this.html = html;
+    }
+
+    public static EmailTemplate compile(String source, boolean html) {
+        return compile(source, html, Collections.emptyMap());
+    }
+
+    public static EmailTemplate compile(String source, boolean html, Map<String, String> globals) {
+        List<Object> segments = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        Matcher matcher = VARIABLE.matcher(source);
+        int position = 0;
+        while (matcher.find()) {
+            text.append(source, position, matcher.start());
+            String name = matcher.group(1);
+            if (globals.containsKey(name)) {
+                text.append(escape(globals.get(name), html));
+            } else {
+                addText(segments, text);
+                segments.add(name);
+            }
+            position = matcher.end();
+        }
+        text.append(source, position, source.length());
+        addText(segments, text);
+        return new EmailTemplate(segments.toArray(), html);
+    }
+
+    /** True when the template has no variables left, its rendering is then the same for every message. */
+    public boolean isStatic() {
+        return segments.length == 0 || (segments.length == 1 && segments[0] instanceof byte[]);
+    }
+
+    /** Renders the template as UTF-8; a variable missing from the model is an error rather than an empty gap. */
+    public byte[] render(Map<String, String> model) {
+        if (isStatic()) {
+            return segments.length == 0 ? new byte[0] : ((byte[]) segments[0]).clone();
+        }
+        ByteArrayOutputStream buffer = BUFFER.get();
+        buffer.reset();
+        try {
+            for (Object segment : segments) {
+                if (segment instanceof byte[]) {
+                    buffer.write((byte[]) segment, 0, ((byte[]) segment).length);
+                } else {
+                    String value = model.get(segment);
+                    if (value == null) {
+                        throw new IllegalArgumentException("No value for email template variable " + segment);
+                    }
+                    byte[] bytes = escape(value, html).getBytes(StandardCharsets.UTF_8);
+                    buffer.write(bytes, 0, bytes.length);
+                }
+            }
+            return buffer.toByteArray();
+        } finally {
+            if (buffer.size() > MAX_RETAINED_BUFFER_SIZE) {
+                BUFFER.remove();
+            }
+        }
+    }
+
+    public String renderString(Map<String, String> model) {
+        return new String(render(model), StandardCharsets.UTF_8);
+    }
+
+    private static void addText(List<Object> segments, StringBuilder text) {
+        if (text.length() > 0) {
+            segments.add(text.toString().getBytes(StandardCharsets.UTF_8));
+            text.setLength(0);
+        }
+    }
+
+    private static String escape(String value, boolean html) {
+        return html ? HtmlUtils.htmlEscape(value, StandardCharsets.UTF_8.name()) : value;
+    }
+}
@@ -1,27 +1,23 @@
 package energosoft.rs.security.utilty;
 import com.auth0.jwt.JWT;
-import static com.auth0.jwt.algorithms.Algorithm.HMAC512;
+import com.auth0.jwt.JWTCreator;
 import static energosoft.rs.security.constant.SecurityConstant.*;
-import static java.util.Arrays.stream;
 
-import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTVerificationException;
-import com.auth0.jwt.interfaces.JWTVerifier;
+import com.auth0.jwt.interfaces.DecodedJWT;
 import energosoft.rs.security.domain.UserPrincipal;
-import org.apache.commons.lang3.StringUtils;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 
 import javax.servlet.http.HttpServletRequest;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  *  @Author: Veljko Siracki
@@ -30,63 +26,71 @@ import java.util.stream.Collectors;
 @Component
 public class JWTTokenProvider {
 
-    @Value("${jwt.secret}")
-    private String secret;
+    private final JwtKeySet jwtKeySet;
+    private final WebAuthenticationDetailsSource authenticationDetailsSource = new WebAuthenticationDetailsSource();
+
+    @Autowired
+    public JWTTokenProvider(JwtKeySet jwtKeySet) {
+        this.jwtKeySet = jwtKeySet;
+    }
 
     public String generateJwtToken(UserPrincipal userPrincipal) {
-        String[] claims = getClaimsFromUser(userPrincipal);
-        return JWT.create().withIssuer(GET_ARRAYS_LLC).withAudience(GET_ARRAYS_ADMINISTRATION)
-                .withIssuedAt(new Date()).withSubject(userPrincipal.getUsername())
-                .withArrayClaim(AUTHORITIES, claims).withExpiresAt(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
-                .sign(HMAC512(secret.getBytes()));
+        return generateJwtToken(userPrincipal.getUsername(), userPrincipal.getAuthorities());
+    }
+
+    public String generateJwtToken(String username, Collection<? extends GrantedAuthority> grantedAuthorities) {
+        long now = System.currentTimeMillis();
+        JWTCreator.Builder builder = JWT.create().withIssuer(GET_ARRAYS_LLC).withAudience(GET_ARRAYS_ADMINISTRATION)
+                .withJWTId(TokenId.generate(now)).withIssuedAt(new Date(now)).withSubject(username)
+                .withExpiresAt(new Date(now + ACCESS_TOKEN_EXPIRATION_TIME));
+        int authorityMask = AuthorityMask.encode(grantedAuthorities);
+        if (authorityMask != AuthorityMask.UNKNOWN) {
+            builder.withClaim(AUTHORITY_MASK, authorityMask);
+        } else {
+            builder.withArrayClaim(AUTHORITIES, getClaims(grantedAuthorities));
+        }
+        return jwtKeySet.sign(builder);
     }
 
-    public List<GrantedAuthority> getAuthorities(String token) {
-        String[] claims = getClaimsFromToken(token);
-        return stream(claims).map(SimpleGrantedAuthority::new).collect(Collectors.toList());
+    /**
+     *  Verifies signature, issuer and expiry exactly once and extracts everything the request needs.
+     *  The token is decoded once; its kid selects the prebuilt verifier from JwtKeySet.
+     *  Throws JWTVerificationException (or one of its subclasses) when the token cannot be trusted.
+     */
+    public VerifiedToken verifyToken(String token) {
+        DecodedJWT decodedJWT = JWT.decode(token);
+        jwtKeySet.getVerifier(decodedJWT.getKeyId()).verify(decodedJWT);
+        // the verifier only checks exp when it is present, a token that never expires is not accepted
+        if (decodedJWT.getExpiresAt() == null) {
+            throw new JWTVerificationException(TOKEN_CANNOT_BE_VERIFIED);
+        }
+        return new VerifiedToken(decodedJWT.getId(), decodedJWT.getSubject(), getAuthorities(decodedJWT),
+                decodedJWT.getIssuedAt(), decodedJWT.getExpiresAt());
     }
 
     public Authentication getAuthentication(String username, List<GrantedAuthority> authorities, HttpServletRequest request) {
         UsernamePasswordAuthenticationToken userPasswordAuthToken = new
                 UsernamePasswordAuthenticationToken(username, null, authorities);
-        userPasswordAuthToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+        userPasswordAuthToken.setDetails(authenticationDetailsSource.buildDetails(request));
         return userPasswordAuthToken;
     }
 
-    public boolean isTokenValid(String username, String token) {
-        JWTVerifier verifier = getJWTVerifier();
-        return StringUtils.isNotEmpty(username) && !isTokenExpired(verifier, token);
-    }
-
-    public String getSubject(String token) {
-        JWTVerifier verifier = getJWTVerifier();
-        return verifier.verify(token).getSubject();
-    }
-
-    private boolean isTokenExpired(JWTVerifier verifier, String token) {
-        Date expiration = verifier.verify(token).getExpiresAt();
-        return expiration.before(new Date());
-    }
-
-    private String[] getClaimsFromToken(String token) {
-        JWTVerifier verifier = getJWTVerifier();
-        return verifier.verify(token).getClaim(AUTHORITIES).asArray(String.class);
-    }
-
-    private JWTVerifier getJWTVerifier() {
-        JWTVerifier verifier;
-        try {
-            Algorithm algorithm = HMAC512(secret);
-            verifier = JWT.require(algorithm).withIssuer(GET_ARRAYS_LLC).build();
-        } catch (JWTVerificationException exception) {
+    private List<GrantedAuthority> getAuthorities(DecodedJWT decodedJWT) {
+        Integer authorityMask = decodedJWT.getClaim(AUTHORITY_MASK).asInt();
+        if (authorityMask != null && AuthorityMask.isValid(authorityMask)) {
+            return AuthorityMask.toGrantedAuthorities(authorityMask);
+        }
+        // tokens issued before the compact claim, or for authorities without a bit, carry the full name array
+        String[] claims = decodedJWT.getClaim(AUTHORITIES).asArray(String.class);
+        if (claims == null) {
             throw new JWTVerificationException(TOKEN_CANNOT_BE_VERIFIED);
         }
-        return verifier;
+        return AuthorityMask.toGrantedAuthorities(claims);
     }
 
-    private String[] getClaimsFromUser(UserPrincipal user) {
+    private String[] getClaims(Collection<? extends GrantedAuthority> grantedAuthorities) {
         List<String> authorities = new ArrayList<>();
-        for (GrantedAuthority grantedAuthority : user.getAuthorities()) {
+        for (GrantedAuthority grantedAuthority : grantedAuthorities) {
             authorities.add(grantedAuthority.getAuthority());
         }
         return authorities.toArray(new String[0]);
@@ -0,0 +1,285 @@
+package energosoft.rs.security.utilty;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTCreator;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.JWTVerifier;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.*;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.util.*;
+
+import static energosoft.rs.security.constant.SecurityConstant.*;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Signing and verification keys for JWTTokenProvider. HS512 keeps the single shared jwt.secret; RS256 and ES256
+ *  sign with the active key pair, stamp its kid into the header and publish every still-trusted public key as a
+ *  JWK Set, so other services can verify tokens without calling this one.
+ *
+ *  A configured key pair is shared by every node, so it is never rotated here: a node-local replacement would sign
+ *  tokens the other nodes cannot verify. Rotate such keys by changing the configuration.
+ *
+ *  The key set is an immutable snapshot swapped atomically on rotation: verifiers, Algorithm instances and the
+ *  serialized JWK Set are all built once per rotation, never per request.
+ **/
+
+@Component
+public class JwtKeySet {
+
+    public static final String HS512 = "HS512";
+    public static final String RS256 = "RS256";
+    public static final String ES256 = "ES256";
+
+    private static final int RSA_KEY_SIZE = 2048;
+    private static final String EC_CURVE = "secp256r1";
+    private static final int EC_COORDINATE_LENGTH = 32;
+
+    private final Logger LOGGER = LoggerFactory.getLogger(getClass());
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String algorithmName;
+    private final Duration rotationPeriod;
+    private final boolean configuredKeys;
+    private volatile Snapshot snapshot;
+
+    @Autowired
+    public JwtKeySet(@Value("${jwt.secret}") String secret,
+                     @Value("${jwt.algorithm:HS512}") String algorithmName,
+                     @Value("${jwt.keys.rotation-period:0}") Duration rotationPeriod,
+                     @Value("${jwt.keys.private-key:}") String privateKey,
+                     @Value("${jwt.keys.public-key:}") String publicKey) {
+        this.algorithmName = algorithmName.toUpperCase();
+        this.rotationPeriod = rotationPeriod;
+        this.configuredKeys = StringUtils.isNotBlank(privateKey);
+        if (HS512.equals(this.algorithmName)) {
+            Algorithm algorithm = Algorithm.HMAC512(secret.getBytes(StandardCharsets.UTF_8));
+            this.snapshot = new Snapshot(new SigningKey(null, algorithm, null), Collections.emptyList(), this);
+        } else {
+            KeyPair keyPair = configuredKeys ? loadKeyPair(privateKey, publicKey) : generateKeyPair();
+            this.snapshot = new Snapshot(signingKey(keyPair), Collections.emptyList(), this);
+            if (configuredKeys && !rotationPeriod.isZero()) {
+                LOGGER.warn("jwt.keys.rotation-period is ignored, configured jwt.keys are only rotated through configuration");
+            }
+        }
+    }
+
+    public static JwtKeySet hmac(String secret) {
+        return new JwtKeySet(secret, HS512, Duration.ZERO, null, null);
+    }
+
+    public String getAlgorithmName() {
+        return algorithmName;
+    }
+
+    /** Signs with the active key, stamping its kid into the header. HS512 tokens carry no kid. */
+    public String sign(JWTCreator.Builder builder) {
+        SigningKey active = snapshot.active;
+        if (active.kid != null) {
+            builder.withKeyId(active.kid);
+        }
+        return builder.sign(active.algorithm);
+    }
+
+    /** Looks up the prebuilt verifier for a token's kid. HS512 and legacy tokens without a kid use the active key. */
+    public JWTVerifier getVerifier(String kid) {
+        Snapshot current = snapshot;
+        if (kid == null && current.active.kid == null) {
+            return current.activeVerifier;
+        }
+        JWTVerifier verifier = current.verifiers.get(kid);
+        if (verifier == null) {
+            throw new JWTVerificationException(TOKEN_CANNOT_BE_VERIFIED);
+        }
+        return verifier;
+    }
+
+    /** Serialized JWK Set of every public key that may still have live tokens. Empty for HS512. */
+    public String getJwkSetJson() {
+        return snapshot.jwkSetJson;
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.keys.rotation-check-interval:PT1M}")
+    public void rotateIfDue() {
+        if (!rotationPeriod.isZero() && !HS512.equals(algorithmName) && !configuredKeys
+                && snapshot.active.createdAt + rotationPeriod.toMillis() <= System.currentTimeMillis()) {
+            rotate();
+        }
+    }
+
+    /**
+     *  Makes a freshly generated key pair the signing key. The previous key stays in the set for verification
+     *  until every token it could have signed has expired.
+     */
+    public synchronized void rotate() {
+        if (HS512.equals(algorithmName)) {
+            throw new IllegalStateException("HS512 keys are configured through jwt.secret and cannot be rotated");
+        }
+        if (configuredKeys) {
+            throw new IllegalStateException("Configured jwt.keys are shared by every node and cannot be rotated in place");
+        }
+        long now = System.currentTimeMillis();
+        Snapshot current = snapshot;
+        List<SigningKey> retained = new ArrayList<>();
+        current.active.retiredAt = now;
+        retained.add(current.active);
+        for (SigningKey key : current.retired) {
+            if (key.retiredAt + ACCESS_TOKEN_EXPIRATION_TIME > now) {
+                retained.add(key);
+            }
+        }
+        snapshot = new Snapshot(signingKey(generateKeyPair()), retained, this);
+        LOGGER.info("Rotated JWT signing key, active kid: " + snapshot.active.kid);
+    }
+
+    private SigningKey signingKey(KeyPair keyPair) {
+        Map<String, Object> jwk = new LinkedHashMap<>();
+        Algorithm algorithm;
+        if (RS256.equals(algorithmName)) {
+            RSAPublicKey publicKey = (RSAPublicKey) keyPair.getPublic();
+            jwk.put("e", base64Url(unsigned(publicKey.getPublicExponent(), 0)));
+            jwk.put("kty", "RSA");
+            jwk.put("n", base64Url(unsigned(publicKey.getModulus(), 0)));
+            algorithm = Algorithm.RSA256(publicKey, (RSAPrivateKey) keyPair.getPrivate());
+        } else if (ES256.equals(algorithmName)) {
+            ECPublicKey publicKey = (ECPublicKey) keyPair.getPublic();
+            jwk.put("crv", "P-256");
+            jwk.put("kty", "EC");
+            jwk.put("x", base64Url(unsigned(publicKey.getW().getAffineX(), EC_COORDINATE_LENGTH)));
+            jwk.put("y", base64Url(unsigned(publicKey.getW().getAffineY(), EC_COORDINATE_LENGTH)));
+            algorithm = Algorithm.ECDSA256(publicKey, (ECPrivateKey) keyPair.getPrivate());
+        } else {
+            throw new IllegalArgumentException("Unsupported jwt.algorithm: " + algorithmName);
+        }
+        // RFC 7638 thumbprint: members above are already in lexicographic order, so equal keys get equal kids on every node
+        String kid = base64Url(sha256(toJson(jwk)));
+        jwk.put("kid", kid);
+        jwk.put("use", "sig");
+        jwk.put("alg", algorithmName);
+        return new SigningKey(kid, algorithm, Collections.unmodifiableMap(jwk));
+    }
+
+    private KeyPair generateKeyPair() {
+        try {
+            KeyPairGenerator generator;
+            if (ES256.equals(algorithmName)) {
+                generator = KeyPairGenerator.getInstance("EC");
+                generator.initialize(new ECGenParameterSpec(EC_CURVE));
+            } else {
+                generator = KeyPairGenerator.getInstance("RSA");
+                generator.initialize(RSA_KEY_SIZE);
+            }
+            return generator.generateKeyPair();
+        } catch (GeneralSecurityException exception) {
+            throw new IllegalStateException("Cannot generate " + algorithmName + " key pair", exception);
+        }
+    }
+
+    private KeyPair loadKeyPair(String privateKey, String publicKey) {
+        try {
+            KeyFactory keyFactory = KeyFactory.getInstance(ES256.equals(algorithmName) ? "EC" : "RSA");
+            return new KeyPair(keyFactory.generatePublic(new X509EncodedKeySpec(decodePem(publicKey))),
+                    keyFactory.generatePrivate(new PKCS8EncodedKeySpec(decodePem(privateKey))));
+        } catch (NoSuchAlgorithmException | InvalidKeySpecException | IllegalArgumentException exception) {
+            throw new IllegalStateException("Cannot load configured " + algorithmName + " key pair", exception);
+        }
+    }
+
+    private static byte[] decodePem(String pem) {
+        String body = pem.replaceAll("-----(BEGIN|END) [A-Z ]+-----", "").replaceAll("\\s", "");
+        return Base64.getDecoder().decode(body);
+    }
+
+    private static byte[] unsigned(BigInteger value, int length) {
+        byte[] bytes = value.toByteArray();
+        int start = bytes.length > 1 && bytes[0] == 0 ? 1 : 0;
+        int size = Math.max(bytes.length - start, length);
+        byte[] result = new byte[size];
+        System.arraycopy(bytes, start, result, size - (bytes.length - start), bytes.length - start);
+        return result;
+    }
+
+    private static String base64Url(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static byte[] sha256(String value) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    private static final class SigningKey {
+        private final String kid;
+        private final Algorithm algorithm;
+        private final Map<String, Object> jwk;
+        private final long createdAt = System.currentTimeMillis();
+        private volatile long retiredAt;
+
+        private SigningKey(String kid, Algorithm algorithm, Map<String, Object> jwk) {
+            this.kid = kid;
+            this.algorithm = algorithm;
+            this.jwk = jwk;
+        }
+
+        private JWTVerifier verifier() {
+            return JWT.require(algorithm).withIssuer(GET_ARRAYS_LLC).build();
+        }
+    }
+
+    private static final class Snapshot {
+        private final SigningKey active;
+        private final List<SigningKey> retired;
+        private final JWTVerifier activeVerifier;
+        private final Map<String, JWTVerifier> verifiers;
+        private final String jwkSetJson;
+
+        private Snapshot(SigningKey active, List<SigningKey> retired, JwtKeySet keySet) {
+            this.active = active;
+            this.retired = retired;
+            this.activeVerifier = active.verifier();
+            Map<String, JWTVerifier> verifiers = new HashMap<>();
+            List<Map<String, Object>> keys = new ArrayList<>();
+            if (active.kid != null) {
+                verifiers.put(active.kid, activeVerifier);
+                keys.add(active.jwk);
+            }
+            for (SigningKey key : retired) {
+                verifiers.put(key.kid, key.verifier());
+                keys.add(key.jwk);
+            }
+            this.verifiers = verifiers;
+            this.jwkSetJson = keySet.toJson(Collections.singletonMap("keys", keys));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package energosoft.rs.security.utilty;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+import org.springframework.util.ClassUtils;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Builds the application's password encoder: a DelegatingPasswordEncoder that writes "{id}"-prefixed hashes with
+ *  the configured algorithm and still matches every older hash, including the unprefixed BCrypt hashes stored
+ *  before. upgradeEncoding reports hashes made with another algorithm or a lower BCrypt strength, which
+ *  DaoAuthenticationProvider then re-encodes after a successful login.
+ **/
+
+public final class PasswordEncoders {
+
+    public static final String BCRYPT = "bcrypt";
+    public static final String PBKDF2 = "pbkdf2";
+    public static final String ARGON2 = "argon2";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PasswordEncoders.class);
+    private static final String ARGON2_GENERATOR = "org.bouncycastle.crypto.generators.Argon2BytesGenerator";
+    private static final String CALIBRATION_PASSWORD = "aB3dE6gH9j";
+    private static final int CALIBRATION_SAMPLES = 3;
+    private static final int MIN_BCRYPT_STRENGTH = 4;
+    private static final int MAX_BCRYPT_STRENGTH = 31;
+
+    private PasswordEncoders() {
+    }
+
+    public static PasswordEncoder delegating(String idForEncode, int bcryptStrength) {
+        BCryptPasswordEncoder bCryptPasswordEncoder = new BCryptPasswordEncoder(bcryptStrength);
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put(BCRYPT, bCryptPasswordEncoder);
+        encoders.put(PBKDF2, new Pbkdf2PasswordEncoder());
+        if (ClassUtils.isPresent(ARGON2_GENERATOR, PasswordEncoders.class.getClassLoader())) {
+            encoders.put(ARGON2, new Argon2PasswordEncoder());
+        }
+        if (!encoders.containsKey(idForEncode)) {
+            throw new IllegalArgumentException("Unsupported password hashing algorithm " + idForEncode
+                    + (ARGON2.equals(idForEncode) ? ", Argon2 needs BouncyCastle on the classpath" : ""));
+        }
+        DelegatingPasswordEncoder passwordEncoder = new DelegatingPasswordEncoder(idForEncode, encoders);
+        passwordEncoder.setDefaultPasswordEncoderForMatches(bCryptPasswordEncoder);
+        return passwordEncoder;
+    }
+
+    /**
+     *  Times BCrypt on this machine and returns the highest strength whose encode still fits the target latency,
+     *  but never less than minStrength. Each strength step doubles the cost, so the search stops at the first
+     *  strength over the target.
+     */
+    public static int calibrateBCryptStrength(Duration targetLatency, int minStrength, int maxStrength) {
+        long targetNanos = targetLatency.toNanos();
+        int floor = Math.max(MIN_BCRYPT_STRENGTH, minStrength);
+        int ceiling = Math.min(MAX_BCRYPT_STRENGTH, Math.max(floor, maxStrength));
+        measure(MIN_BCRYPT_STRENGTH); // warm up
+        int strength = MIN_BCRYPT_STRENGTH;
+        long nanos = 0;
+        for (int candidate = MIN_BCRYPT_STRENGTH; candidate <= ceiling; candidate++) {
+            long candidateNanos = measure(candidate);
+            if (candidateNanos > targetNanos) {
+                break;
+            }
+            strength = candidate;
+            nanos = candidateNanos;
+        }
+        if (strength < floor) {
+            LOGGER.warn("BCrypt strength " + floor + " exceeds the " + targetLatency.toMillis()
+                    + " ms target on this machine, using it anyway");
+            return floor;
+        }
+        LOGGER.info("Calibrated BCrypt strength " + strength + " (" + nanos / 1_000_000 + " ms per hash, target "
+                + targetLatency.toMillis() + " ms)");
+        return strength;
+    }
+
+    private static long measure(int strength) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < CALIBRATION_SAMPLES; i++) {
+            long start = System.nanoTime();
+            encoder.encode(CALIBRATION_PASSWORD);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+}
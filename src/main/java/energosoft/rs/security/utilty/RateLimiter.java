@@ -0,0 +1,104 @@
+package energosoft.rs.security.utilty;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Lock-free, fixed-size table of token buckets. Each bucket is one long updated by CAS: a 16-bit key fingerprint
+ *  and the bucket's theoretical arrival time (GCRA, the timestamp form of a token bucket) in milliseconds.
+ *  A key may live in one of two adjacent slots. When both hold other, still refilling buckets, a sharing table
+ *  lets the key share the first one, so a full table throttles more strictly rather than forgetting anyone. A
+ *  non-sharing table instead takes over the slot that refills first, so no key is ever limited by another key's
+ *  bucket, and only a key that was close to full anyway is forgotten.
+ **/
+
+public final class RateLimiter {
+
+    private static final int TIME_BITS = 48;
+    private static final long TIME_MASK = (1L << TIME_BITS) - 1;
+    private static final long EMPTY = 0;
+
+    private final AtomicLongArray buckets;
+    private final int slotMask;
+    private final long origin = System.currentTimeMillis() - 1;
+    private final HashFunction hashFunction;
+    private final boolean sharing;
+
+    public RateLimiter(int maxBuckets) {
+        this(maxBuckets, true);
+    }
+
+    public RateLimiter(int maxBuckets, boolean sharing) {
+        this.sharing = sharing;
+        int size = Math.max(2, Integer.highestOneBit(Math.max(2, maxBuckets - 1)) << 1);
+        this.buckets = new AtomicLongArray(size);
+        this.slotMask = size - 1;
+        SecureRandom secureRandom = new SecureRandom();
+        this.hashFunction = Hashing.sipHash24(secureRandom.nextLong(), secureRandom.nextLong());
+    }
+
+    /**
+     *  Takes one token from the key's bucket, which holds capacity tokens and refills completely over period.
+     *  Returns 0 when the token was taken, otherwise the milliseconds until one is available.
+     */
+    public long tryAcquire(String key, int capacity, long periodMillis, long now) {
+        long hash = hashFunction.hashString(key, StandardCharsets.UTF_8).asLong();
+        long fingerprint = (hash >>> TIME_BITS) | 1;
+        int first = (int) hash & slotMask;
+        long time = Math.max(1, now - origin);
+        long interval = Math.max(1, periodMillis / Math.max(1, capacity));
+        while (true) {
+            int slot = first;
+            long state = buckets.get(first);
+            long owner = fingerprint;
+            if (fingerprint(state) != fingerprint) {
+                long second = buckets.get(first ^ 1);
+                if (fingerprint(second) == fingerprint) {
+                    slot = first ^ 1;
+                    state = second;
+                } else if (!isIdle(state, time) && isIdle(second, time)) {
+                    slot = first ^ 1;
+                    state = second;
+                } else if (!isIdle(state, time)) {
+                    if (sharing) {
+                        owner = fingerprint(state);
+                    } else if (arrival(second) < arrival(state)) {
+                        slot = first ^ 1;
+                        state = second;
+                    }
+                }
+            }
+            long arrival = owner == fingerprint(state) ? arrival(state) : 0;
+            long next = Math.max(arrival, time) + interval;
+            if (next - time > periodMillis) {
+                return next - periodMillis - time;
+            }
+            if (buckets.compareAndSet(slot, state, (owner << TIME_BITS) | next)) {
+                return 0;
+            }
+        }
+    }
+
+    public int maxBuckets() {
+        return buckets.length();
+    }
+
+    /** A bucket whose arrival time has passed is full again, its slot can be taken over. */
+    private static boolean isIdle(long state, long time) {
+        return state == EMPTY || arrival(state) <= time;
+    }
+
+    private static long fingerprint(long state) {
+        return state >>> TIME_BITS;
+    }
+
+    private static long arrival(long state) {
+        return state & TIME_MASK;
+    }
+}
@@ -0,0 +1,34 @@
+package energosoft.rs.security.utilty;
+
+import energosoft.rs.security.enumeration.Role;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Stores User.role, the name of a Role, as the small int ordinal of that Role.
+ **/
+
+@Converter
+public class RoleConverter implements AttributeConverter<String, Integer> {
+
+    private static final Role[] ROLES = Role.values();
+
+    @Override
+    public Integer convertToDatabaseColumn(String role) {
+        return role == null ? null : Role.valueOf(role).ordinal();
+    }
+
+    @Override
+    public String convertToEntityAttribute(Integer id) {
+        if (id == null) {
+            return null;
+        }
+        if (id < 0 || id >= ROLES.length) {
+            throw new IllegalArgumentException("Invalid role id " + id);
+        }
+        return ROLES[id].name();
+    }
+}
@@ -0,0 +1,181 @@
+package energosoft.rs.security.utilty;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.Duration;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Fixed-size, lock-striped table of per-key attempt counters over a sliding window. Keys are stored as 64-bit
+ *  SipHash values with a per-instance random key, counters as one packed long per slot (window index, previous
+ *  window count, current window count), so memory is two long arrays allocated once: 16 bytes per slot.
+ *
+ *  The table is set-associative: a key maps to one bucket of BUCKET_SIZE slots guarded by one of the stripe locks.
+ *  A new key takes a free or expired slot in its bucket, otherwise the slot with the lowest count, so a flood of
+ *  one-off keys evicts each other before it evicts a key that is close to the limit.
+ **/
+
+public final class SlidingWindowAttemptCounter {
+
+    private static final int BUCKET_SIZE = 8;
+    private static final int MAX_LOCK_STRIPES = 4096;
+    private static final int COUNT_BITS = 16;
+    private static final int MAX_COUNT = (1 << COUNT_BITS) - 1;
+    private static final long EMPTY = 0;
+
+    private final long[] keys;
+    private final long[] states;
+    private final Object[] locks;
+    private final int bucketMask;
+    private final int lockMask;
+    private final long windowMillis;
+    private final HashFunction hashFunction;
+
+    public SlidingWindowAttemptCounter(int capacity, Duration window) {
+        int buckets = ceilingPowerOfTwo(Math.max(1, (capacity + BUCKET_SIZE - 1) / BUCKET_SIZE));
+        this.keys = new long[buckets * BUCKET_SIZE];
+        this.states = new long[buckets * BUCKET_SIZE];
+        this.locks = new Object[Math.min(buckets, MAX_LOCK_STRIPES)];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        this.bucketMask = buckets - 1;
+        this.lockMask = locks.length - 1;
+        this.windowMillis = Math.max(1, window.toMillis());
+        SecureRandom secureRandom = new SecureRandom();
+        this.hashFunction = Hashing.sipHash24(secureRandom.nextLong(), secureRandom.nextLong());
+    }
+
+    /** Counts one more attempt for the key and returns the attempts within the last window, this one included. */
+    public int increment(String key, long now) {
+        long hash = hash(key);
+        int bucket = bucket(hash);
+        int window = window(now);
+        synchronized (locks[bucket & lockMask]) {
+            int slot = find(bucket, hash);
+            if (slot < 0) {
+                slot = victim(bucket, now);
+                keys[slot] = hash;
+                states[slot] = EMPTY;
+            }
+            long state = roll(states[slot], window);
+            state = pack(window, previous(state), Math.min(MAX_COUNT, current(state) + 1));
+            states[slot] = state;
+            return estimate(state, now, windowMillis);
+        }
+    }
+
+    /** Attempts of the key within the last window. */
+    public int count(String key, long now) {
+        long hash = hash(key);
+        int bucket = bucket(hash);
+        synchronized (locks[bucket & lockMask]) {
+            int slot = find(bucket, hash);
+            return slot < 0 ? 0 : estimate(states[slot], now, windowMillis);
+        }
+    }
+
+    public void reset(String key) {
+        long hash = hash(key);
+        int bucket = bucket(hash);
+        synchronized (locks[bucket & lockMask]) {
+            int slot = find(bucket, hash);
+            if (slot >= 0) {
+                keys[slot] = EMPTY;
+                states[slot] = EMPTY;
+            }
+        }
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+
+    /** Sliding window estimate for counts kept outside this table, with window = now / windowMillis when counted. */
+    public static int estimate(long windowMillis, int window, int previous, int current, long now) {
+        return estimate(pack(window, Math.min(MAX_COUNT, previous), Math.min(MAX_COUNT, current)), now, windowMillis);
+    }
+
+    private int find(int bucket, long hash) {
+        int start = bucket * BUCKET_SIZE;
+        for (int slot = start; slot < start + BUCKET_SIZE; slot++) {
+            if (keys[slot] == hash) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private int victim(int bucket, long now) {
+        int start = bucket * BUCKET_SIZE;
+        int victim = start;
+        int lowest = Integer.MAX_VALUE;
+        for (int slot = start; slot < start + BUCKET_SIZE; slot++) {
+            int count = keys[slot] == EMPTY ? 0 : estimate(states[slot], now, windowMillis);
+            if (count == 0) {
+                return slot;
+            }
+            if (count < lowest) {
+                lowest = count;
+                victim = slot;
+            }
+        }
+        return victim;
+    }
+
+    /** Moves the state to the given window: the current count becomes the previous one, older counts expire. */
+    private static long roll(long state, int window) {
+        int stateWindow = windowOf(state);
+        if (stateWindow == window) {
+            return state;
+        }
+        return stateWindow == window - 1 ? pack(window, current(state), 0) : pack(window, 0, 0);
+    }
+
+    /**
+     *  Sliding window estimate: the current window's count plus the part of the previous window that still
+     *  overlaps the last windowMillis, rounded up so a lockout never ends early.
+     */
+    private static int estimate(long state, long now, long windowMillis) {
+        long rolled = roll(state, (int) (now / windowMillis));
+        long remaining = windowMillis - now % windowMillis;
+        return current(rolled) + (int) ((previous(rolled) * remaining + windowMillis - 1) / windowMillis);
+    }
+
+    private int window(long now) {
+        return (int) (now / windowMillis);
+    }
+
+    private long hash(String key) {
+        long hash = hashFunction.hashString(key, StandardCharsets.UTF_8).asLong();
+        return hash == EMPTY ? 1 : hash;
+    }
+
+    private int bucket(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & bucketMask;
+    }
+
+    private static long pack(int window, int previous, int current) {
+        return ((long) window << 32) | ((long) previous << COUNT_BITS) | current;
+    }
+
+    private static int windowOf(long state) {
+        return (int) (state >>> 32);
+    }
+
+    private static int previous(long state) {
+        return (int) (state >>> COUNT_BITS) & MAX_COUNT;
+    }
+
+    private static int current(long state) {
+        return (int) state & MAX_COUNT;
+    }
+
+    private static int ceilingPowerOfTwo(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+}
@@ -0,0 +1,191 @@
+package energosoft.rs.security.utilty;
+
+import energosoft.rs.security.configuration.EmailProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import java.util.Properties;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Pool of connected, authenticated SMTP transports over one Session built from its own Properties. A connection
+ *  is reused for up to maxMessagesPerConnection messages, so TLS and AUTH are paid once per connection instead of
+ *  once per email. Idle connections are handed out most recently used first and are checked with NOOP when they
+ *  have been idle for validateAfterIdle; the ones idle longer than maxIdle are closed by evictIdle. At most
+ *  maxConnections are open at a time, further senders wait up to borrowTimeout.
+ **/
+
+public final class SmtpTransportPool implements AutoCloseable {
+
+    private Logger LOGGER = LoggerFactory.getLogger(getClass());
+    private final BlockingDeque<PooledTransport> idle = new LinkedBlockingDeque<>();
+    private final Session session;
+    private final Semaphore permits;
+    private final EmailProperties.Smtp smtp;
+    private final long maxIdleMillis;
+    private final long validateAfterIdleMillis;
+    private volatile boolean closed;
+
+    public SmtpTransportPool(EmailProperties.Smtp smtp) {
+        this.smtp = smtp;
+        this.session = Session.getInstance(sessionProperties(smtp), null);
+        this.permits = new Semaphore(Math.max(1, smtp.getPool().getMaxConnections()));
+        this.maxIdleMillis = smtp.getPool().getMaxIdle().toMillis();
+        this.validateAfterIdleMillis = smtp.getPool().getValidateAfterIdle().toMillis();
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    /**
+     *  Sends the message over a pooled connection. A reused connection that fails for any reason other than
+     *  rejected recipients is dropped and the message is tried once more over a new one.
+     */
+    public void send(Message message) throws MessagingException {
+        PooledTransport transport = borrow();
+        try {
+            send(transport, message);
+        } catch (MessagingException exception) {
+            if (transport.messagesSent == 0 || exception instanceof SendFailedException) {
+                throw exception;
+            }
+            LOGGER.debug("Pooled SMTP connection failed, retrying on a new one: " + exception.getMessage());
+            send(borrow(), message);
+        }
+    }
+
+    /** Closes the connections that have been idle for longer than maxIdle. */
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        for (PooledTransport transport : idle) {
+            if (now - transport.lastUsed >= maxIdleMillis && idle.remove(transport)) {
+                transport.close();
+            }
+        }
+    }
+
+    public int idleConnections() {
+        return idle.size();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        PooledTransport transport;
+        while ((transport = idle.pollFirst()) != null) {
+            transport.close();
+        }
+    }
+
+    private PooledTransport borrow() throws MessagingException {
+        if (closed) {
+            throw new MessagingException("SMTP transport pool is closed");
+        }
+        try {
+            if (!permits.tryAcquire(smtp.getPool().getBorrowTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new MessagingException("No SMTP connection available within " + smtp.getPool().getBorrowTimeout());
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted while waiting for an SMTP connection", exception);
+        }
+        try {
+            long now = System.currentTimeMillis();
+            PooledTransport transport;
+            while ((transport = idle.pollFirst()) != null) {
+                long idleMillis = now - transport.lastUsed;
+                if (idleMillis >= maxIdleMillis || (idleMillis >= validateAfterIdleMillis && !transport.transport.isConnected())) {
+                    transport.close();
+                    continue;
+                }
+                return transport;
+            }
+            return connect();
+        } catch (MessagingException | RuntimeException exception) {
+            permits.release();
+            throw exception;
+        }
+    }
+
+    private void send(PooledTransport transport, Message message) throws MessagingException {
+        boolean sent = false;
+        try {
+            transport.send(message);
+            sent = true;
+        } finally {
+            release(transport, sent);
+        }
+    }
+
+    private void release(PooledTransport transport, boolean reusable) {
+        try {
+            if (reusable && !closed && transport.messagesSent < smtp.getPool().getMaxMessagesPerConnection()) {
+                transport.lastUsed = System.currentTimeMillis();
+                idle.offerFirst(transport);
+            } else {
+                transport.close();
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private PooledTransport connect() throws MessagingException {
+        Transport transport = session.getTransport(smtp.getProtocol());
+        if (smtp.isAuth()) {
+            transport.connect(smtp.getHost(), smtp.getPort(), smtp.getUsername(), smtp.getPassword());
+        } else {
+            transport.connect(smtp.getHost(), smtp.getPort(), null, null);
+        }
+        return new PooledTransport(transport);
+    }
+
+    private static Properties sessionProperties(EmailProperties.Smtp smtp) {
+        String prefix = "mail." + smtp.getProtocol() + ".";
+        Properties properties = new Properties();
+        properties.put(prefix + "host", smtp.getHost());
+        properties.put(prefix + "port", String.valueOf(smtp.getPort()));
+        properties.put(prefix + "auth", String.valueOf(smtp.isAuth()));
+        properties.put(prefix + "starttls.enable", String.valueOf(smtp.isStartTls()));
+        properties.put(prefix + "starttls.required", String.valueOf(smtp.isStartTls()));
+        properties.put(prefix + "connectiontimeout", String.valueOf(smtp.getConnectionTimeout().toMillis()));
+        properties.put(prefix + "timeout", String.valueOf(smtp.getTimeout().toMillis()));
+        properties.put(prefix + "writetimeout", String.valueOf(smtp.getTimeout().toMillis()));
+        return properties;
+    }
+
+    private final class PooledTransport {
+
+        private final Transport transport;
+        private int messagesSent;
+        private long lastUsed;
+
+        private PooledTransport(Transport transport) {
+            this.transport = transport;
+        }
+
+        private void send(Message message) throws MessagingException {
+            transport.sendMessage(message, message.getAllRecipients());
+            messagesSent++;
+        }
+
+        private void close() {
+            try {
+                transport.close();
+            } catch (MessagingException exception) {
+                LOGGER.debug("Could not close SMTP connection: " + exception.getMessage());
+            }
+        }
+    }
+}
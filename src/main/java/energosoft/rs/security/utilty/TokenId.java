@@ -0,0 +1,40 @@
+package energosoft.rs.security.utilty;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Compact jti values: 8 bytes of issue time in milliseconds followed by 8 random bytes, base64url encoded.
+ *  The embedded millisecond timestamp lets revocation cut-offs be compared more precisely than the
+ *  whole-second iat claim allows.
+ **/
+
+public final class TokenId {
+
+    private static final int LENGTH = 16;
+    private static final int ENCODED_LENGTH = 22;
+
+    private TokenId() {
+    }
+
+    public static String generate(long issuedAt) {
+        ByteBuffer buffer = ByteBuffer.allocate(LENGTH);
+        buffer.putLong(issuedAt).putLong(ThreadLocalRandom.current().nextLong());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    /** Millisecond issue time embedded in the id, or -1 when the id was not produced by generate. */
+    public static long issuedAt(String id) {
+        if (id == null || id.length() != ENCODED_LENGTH) {
+            return -1;
+        }
+        try {
+            return ByteBuffer.wrap(Base64.getUrlDecoder().decode(id)).getLong();
+        } catch (IllegalArgumentException exception) {
+            return -1;
+        }
+    }
+}
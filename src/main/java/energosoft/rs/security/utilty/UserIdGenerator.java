@@ -0,0 +1,98 @@
+package energosoft.rs.security.utilty;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Public userIds in the Snowflake layout: 41 bits of milliseconds since 2020-01-01, the 10-bit user.id.node and a
+ *  12-bit sequence, as 13 Crockford base32 characters. The width is fixed and the alphabet is in ASCII order, so ids
+ *  sort by creation time as strings too and new rows land at the right edge of the ux_user_user_id index.
+ *  The last timestamp and sequence share one CAS-updated long. A clock that steps back, or a millisecond whose 4096
+ *  ids are used up, continues from the last id instead of waiting. That state is seeded at startup with the newest
+ *  stored userId, so a restart never reissues an id. Every node needs its own user.id.node.
+ **/
+
+@Component
+public class UserIdGenerator {
+
+    public static final int MAX_NODE = 1023;
+    public static final int LENGTH = 13;
+    private static final long EPOCH = 1577836800000L;  // 2020-01-01T00:00:00Z
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final String ALPHABET_STRING = "0123456789ABCDEFGHJKMNPQRSTVWXYZ";
+    private static final char[] ALPHABET = ALPHABET_STRING.toCharArray();
+
+    private final AtomicLong last = new AtomicLong();  // milliseconds since EPOCH << SEQUENCE_BITS | sequence
+    private final long node;
+
+    @Autowired
+    public UserIdGenerator(@Value("${user.id.node:0}") int node) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("user.id.node must be between 0 and " + MAX_NODE + ", was " + node);
+        }
+        this.node = (long) node << SEQUENCE_BITS;
+    }
+
+    public String next() {
+        return next(System.currentTimeMillis());
+    }
+
+    public String next(long now) {
+        long time = Math.max(0, now - EPOCH) << SEQUENCE_BITS;
+        long state;
+        long next;
+        do {
+            state = last.get();
+            next = time > state ? time : state + 1;  // a full sequence carries into the next millisecond
+        } while (!last.compareAndSet(state, next));
+        return encode((next & ~SEQUENCE_MASK) << NODE_BITS | node | (next & SEQUENCE_MASK));
+    }
+
+    /**
+     *  Continues in the millisecond after userId, the newest stored id of any node; ids that were not generated here
+     *  are ignored. Its sequence is another node's, so this node's ids of that millisecond are all left behind.
+     */
+    public void seed(String userId) {
+        long id = decode(userId);
+        if (id >= 0) {
+            long time = id >>> (NODE_BITS + SEQUENCE_BITS);
+            last.accumulateAndGet(((time + 1) << SEQUENCE_BITS) - 1, Math::max);
+        }
+    }
+
+    /** The greatest id any node can generate up to time, an upper bound for a backward scan of ux_user_user_id. */
+    public static String latestPossible(long time) {
+        return encode(Math.max(0, time - EPOCH) << (NODE_BITS + SEQUENCE_BITS) | ((1L << (NODE_BITS + SEQUENCE_BITS)) - 1));
+    }
+
+    private static String encode(long id) {
+        char[] chars = new char[LENGTH];
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            chars[i] = ALPHABET[(int) id & 31];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    private static long decode(String userId) {
+        if (userId == null || userId.length() != LENGTH || ALPHABET_STRING.indexOf(userId.charAt(0)) > 7) {
+            return -1;
+        }
+        long id = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            int digit = ALPHABET_STRING.indexOf(userId.charAt(i));
+            if (digit < 0) {
+                return -1;
+            }
+            id = id << 5 | digit;
+        }
+        return id;
+    }
+}
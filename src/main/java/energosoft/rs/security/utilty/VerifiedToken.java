@@ -0,0 +1,57 @@
+package energosoft.rs.security.utilty;
+
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Immutable result of a single JWT verification. Everything JwtAuthorizationFilter needs from the token is
+ *  extracted once, so the signature is never checked twice for the same request.
+ **/
+
+public final class VerifiedToken {
+
+    private final String id;
+    private final String subject;
+    private final List<GrantedAuthority> authorities;
+    private final long issuedAt;
+    private final long expiresAt;
+
+    /** The authorities list is shared as is and must already be unmodifiable. */
+    public VerifiedToken(String id, String subject, List<GrantedAuthority> authorities, Date issuedAt, Date expiresAt) {
+        this.id = id;
+        this.subject = subject;
+        this.authorities = authorities;
+        this.issuedAt = issuedAt == null ? 0 : issuedAt.getTime();
+        this.expiresAt = expiresAt == null ? 0 : expiresAt.getTime();  // JWTTokenProvider rejects tokens without exp
+    }
+
+    /** jti claim, null for tokens issued before token ids were introduced. */
+    public String getId() {
+        return id;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public List<GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    /** iat claim, which JWT truncates to whole seconds. */
+    public long getIssuedAt() {
+        return issuedAt;
+    }
+
+    public Date getExpiresAt() {
+        return new Date(expiresAt);
+    }
+
+    public boolean isExpired(long now) {
+        return expiresAt <= now;
+    }
+}
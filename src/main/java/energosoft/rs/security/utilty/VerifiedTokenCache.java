@@ -0,0 +1,109 @@
+package energosoft.rs.security.utilty;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Opt-in cache of tokens that already passed JWTTokenProvider.verifyToken, keyed by the SHA-256 digest of the
+ *  raw token. A hit skips HMAC and claim decoding entirely; an entry is never served after the token's own exp.
+ **/
+
+@Component
+public class VerifiedTokenCache {
+
+    private static final HashFunction TOKEN_DIGEST = Hashing.sha256();
+
+    private final JWTTokenProvider jwtTokenProvider;
+    private final Cache<HashCode, VerifiedToken> cache;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @Autowired
+    public VerifiedTokenCache(JWTTokenProvider jwtTokenProvider,
+                              MeterRegistry meterRegistry,
+                              @Value("${jwt.cache.enabled:false}") boolean enabled,
+                              @Value("${jwt.cache.maximum-size:10000}") long maximumSize,
+                              @Value("${jwt.cache.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.jwtTokenProvider = jwtTokenProvider;
+        this.cache = enabled ? CacheBuilder.newBuilder().maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite.toMillis(), MILLISECONDS)
+                .removalListener(this::onRemoval).build() : null;
+        registerMetrics(meterRegistry);
+    }
+
+    /**
+     *  Returns the verified view of the token, verifying it only when no live entry exists.
+     *  Verification failures are never cached and propagate as JWTVerificationException.
+     */
+    public VerifiedToken resolve(String token) {
+        if (cache == null) {
+            return jwtTokenProvider.verifyToken(token);
+        }
+        HashCode key = TOKEN_DIGEST.hashString(token, StandardCharsets.UTF_8);
+        VerifiedToken verifiedToken = cache.getIfPresent(key);
+        if (verifiedToken != null) {
+            if (!verifiedToken.isExpired(System.currentTimeMillis())) {
+                hits.increment();
+                return verifiedToken;
+            }
+            cache.invalidate(key);
+            evictions.increment();
+        }
+        misses.increment();
+        verifiedToken = jwtTokenProvider.verifyToken(token);
+        cache.put(key, verifiedToken);
+        return verifiedToken;
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long size() {
+        return cache == null ? 0 : cache.size();
+    }
+
+    private void onRemoval(RemovalNotification<HashCode, VerifiedToken> notification) {
+        if (notification.wasEvicted()) {
+            evictions.increment();
+        }
+    }
+
+    private void registerMetrics(MeterRegistry meterRegistry) {
+        FunctionCounter.builder("jwt.cache.hits", this, VerifiedTokenCache::getHitCount).register(meterRegistry);
+        FunctionCounter.builder("jwt.cache.misses", this, VerifiedTokenCache::getMissCount).register(meterRegistry);
+        FunctionCounter.builder("jwt.cache.evictions", this, VerifiedTokenCache::getEvictionCount).register(meterRegistry);
+        Gauge.builder("jwt.cache.size", this, VerifiedTokenCache::size).register(meterRegistry);
+    }
+}
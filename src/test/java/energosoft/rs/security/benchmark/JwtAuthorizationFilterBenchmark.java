@@ -0,0 +1,73 @@
+package energosoft.rs.security.benchmark;
+
+import energosoft.rs.security.domain.UserPrincipal;
+import energosoft.rs.security.filter.JwtAuthorizationFilter;
+import energosoft.rs.security.service.TokenRevocationService;
+import energosoft.rs.security.utilty.JWTTokenProvider;
+import energosoft.rs.security.utilty.JwtKeySet;
+import energosoft.rs.security.utilty.VerifiedTokenCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static energosoft.rs.security.constant.SecurityConstant.TOKEN_PREFIX;
+import static org.springframework.http.HttpHeaders.AUTHORIZATION;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Full JwtAuthorizationFilter pass for an authenticated request: header parsing, verification (or cache hit),
+ *  revocation check and building the Authentication, with and without the verified token cache.
+ **/
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtAuthorizationFilterBenchmark {
+
+    @Param({"false", "true"})
+    public boolean cacheEnabled;
+
+    private JwtAuthorizationFilter filter;
+    private String authorizationHeader;
+
+    @Setup
+    public void setUp() {
+        JWTTokenProvider jwtTokenProvider = new JWTTokenProvider(JwtKeySet.hmac(JwtVerificationBenchmark.SECRET));
+        VerifiedTokenCache verifiedTokenCache = new VerifiedTokenCache(jwtTokenProvider, new SimpleMeterRegistry(),
+                cacheEnabled, 10_000, Duration.ofMinutes(10));
+        filter = new JwtAuthorizationFilter(jwtTokenProvider, verifiedTokenCache, new TokenRevocationService(100_000));
+        authorizationHeader = TOKEN_PREFIX
+                + jwtTokenProvider.generateJwtToken(new UserPrincipal(JwtVerificationBenchmark.benchmarkUser()));
+    }
+
+    @Benchmark
+    public Object authenticatedRequest() throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/user/list");
+        request.addHeader(AUTHORIZATION, authorizationHeader);
+        try {
+            filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+            return SecurityContextHolder.getContext().getAuthentication();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JwtAuthorizationFilterBenchmark.class.getSimpleName()).build()).run();
+    }
+}
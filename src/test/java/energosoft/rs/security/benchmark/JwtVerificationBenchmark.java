@@ -0,0 +1,86 @@
+package energosoft.rs.security.benchmark;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.JWTVerifier;
+import energosoft.rs.security.domain.User;
+import energosoft.rs.security.domain.UserPrincipal;
+import energosoft.rs.security.enumeration.Role;
+import energosoft.rs.security.utilty.JWTTokenProvider;
+import energosoft.rs.security.utilty.JwtKeySet;
+import energosoft.rs.security.utilty.VerifiedToken;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static energosoft.rs.security.constant.SecurityConstant.AUTHORITIES;
+import static energosoft.rs.security.constant.SecurityConstant.GET_ARRAYS_LLC;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Compares the old per-request verification (three verifier builds, three HMAC512 checks) with the
+ *  single-pass JWTTokenProvider.verifyToken used by JwtAuthorizationFilter, plus the cost of issuing a token.
+ **/
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtVerificationBenchmark {
+
+    static final String SECRET = "[a-zA-Z0-9._]^+$Guidelines89797987forAlphabeticalArraNumeralsandOtherSymbo$";
+
+    private JWTTokenProvider jwtTokenProvider;
+    private UserPrincipal userPrincipal;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtTokenProvider = new JWTTokenProvider(JwtKeySet.hmac(SECRET));
+        userPrincipal = new UserPrincipal(benchmarkUser());
+        token = jwtTokenProvider.generateJwtToken(userPrincipal);
+    }
+
+    @Benchmark
+    public String generateJwtToken() {
+        return jwtTokenProvider.generateJwtToken(userPrincipal);
+    }
+
+    @Benchmark
+    public Object legacyThreePassVerification() {
+        String subject = legacyVerifier().verify(token).getSubject();
+        Date expiresAt = legacyVerifier().verify(token).getExpiresAt();
+        String[] authorities = legacyVerifier().verify(token).getClaim(AUTHORITIES).asArray(String.class);
+        return expiresAt.before(new Date()) ? subject : authorities;
+    }
+
+    @Benchmark
+    public VerifiedToken singlePassVerification() {
+        return jwtTokenProvider.verifyToken(token);
+    }
+
+    private JWTVerifier legacyVerifier() {
+        return JWT.require(Algorithm.HMAC512(SECRET)).withIssuer(GET_ARRAYS_LLC).build();
+    }
+
+    static User benchmarkUser() {
+        User user = new User();
+        user.setUsername("benchmark");
+        user.setRole(Role.ROLE_SUPER_ADMIN.name());
+        user.setAuthorities(Role.ROLE_SUPER_ADMIN.getAuthorities());
+        user.setActive(true);
+        user.setNotLocked(true);
+        return user;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JwtVerificationBenchmark.class.getSimpleName()).build()).run();
+    }
+}
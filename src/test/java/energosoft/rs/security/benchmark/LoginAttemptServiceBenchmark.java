@@ -0,0 +1,72 @@
+package energosoft.rs.security.benchmark;
+
+import energosoft.rs.security.service.LoginAttemptService;
+import energosoft.rs.security.service.impl.InMemoryLoginAttemptStore;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  LoginAttemptService under contention: 8 threads mixing failed-login increments with the lock check done on
+ *  every login, spread over a pool of usernames small enough that threads keep hitting the same keys.
+ **/
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoginAttemptServiceBenchmark {
+
+    @Param({"16", "1024"})
+    public int usernames;
+
+    private LoginAttemptService loginAttemptService;
+    private String[] pool;
+
+    @Setup
+    public void setUp() {
+        loginAttemptService = new LoginAttemptService(new InMemoryLoginAttemptStore(1 << 20, Duration.ofMinutes(15)));
+        pool = new String[usernames];
+        for (int i = 0; i < usernames; i++) {
+            pool[i] = "user" + i;
+        }
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(2)
+    public void addAttempt() {
+        loginAttemptService.addUserToLoginAttemptCache(randomUsername());
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(5)
+    public boolean hasExceededMaxAttempts() {
+        return loginAttemptService.hasExceededMaxAttempts(randomUsername());
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public void evict() {
+        loginAttemptService.evictUserFromLoginAttemptCache(randomUsername());
+    }
+
+    private String randomUsername() {
+        return pool[ThreadLocalRandom.current().nextInt(pool.length)];
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(LoginAttemptServiceBenchmark.class.getSimpleName()).build()).run();
+    }
+}
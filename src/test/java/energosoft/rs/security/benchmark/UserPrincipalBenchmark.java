@@ -0,0 +1,42 @@
+package energosoft.rs.security.benchmark;
+
+import energosoft.rs.security.domain.UserPrincipal;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  UserPrincipal.getAuthorities, called by the authentication manager on every login.
+ **/
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserPrincipalBenchmark {
+
+    private UserPrincipal userPrincipal;
+
+    @Setup
+    public void setUp() {
+        userPrincipal = new UserPrincipal(JwtVerificationBenchmark.benchmarkUser());
+    }
+
+    @Benchmark
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return userPrincipal.getAuthorities();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(UserPrincipalBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,146 @@
+package energosoft.rs.security.filter;
+
+import energosoft.rs.security.configuration.RateLimitProperties;
+import energosoft.rs.security.domain.User;
+import energosoft.rs.security.enumeration.Role;
+import energosoft.rs.security.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static energosoft.rs.security.constant.SecurityConstant.JWT_TOKEN_HEADER;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.http.HttpHeaders.RETRY_AFTER;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Runs against the login route of application.yml: 10 attempts per username and 20 per client IP a minute.
+ **/
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("dev")
+class RateLimitFilterTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Test
+    void loginBodyReachesTheControllerAfterTheUsernameIsRead() throws Exception {
+        saveUser("ratelimit", "password");
+
+        login("ratelimit", "password", "10.0.0.1")
+                .andExpect(status().isOk())
+                .andExpect(header().exists(JWT_TOKEN_HEADER))
+                .andExpect(jsonPath("$.username").value("ratelimit"));
+    }
+
+    @Test
+    void usernameIsLimitedAcrossClientsWithoutThrottlingOthers() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            login("mallory", "wrong", "10.0.1." + i).andExpect(status().is(not(429)));
+        }
+        login("mallory", "wrong", "10.0.1.100")
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists(RETRY_AFTER));
+        login("someone-else", "wrong", "10.0.1.100").andExpect(status().is(not(429)));
+    }
+
+    @Test
+    void cachedBodyCanBeReadAsynchronously() throws Exception {
+        RateLimitProperties.Limit limit = new RateLimitProperties.Limit();
+        limit.setCapacity(10);
+        RateLimitProperties.Route route = new RateLimitProperties.Route();
+        route.setName("login");
+        route.setPaths(Collections.singletonList("/user/login"));
+        route.setTargetField("username");
+        route.setPerTarget(limit);
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setRoutes(Collections.singletonList(route));
+        String body = "{\"username\":\"alice\",\"password\":\"password\"}";
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/user/login");
+        request.setContentType(APPLICATION_JSON_VALUE);
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        List<String> events = new ArrayList<>();
+
+        new RateLimitFilter(properties).doFilter(request, new MockHttpServletResponse(), (filtered, response) -> {
+            ServletInputStream inputStream = filtered.getInputStream();
+            inputStream.setReadListener(new ReadListener() {
+                @Override
+                public void onDataAvailable() throws IOException {
+                    events.add("data");
+                    while (inputStream.isReady() && !inputStream.isFinished()) {
+                        read.write(inputStream.read());
+                    }
+                }
+
+                @Override
+                public void onAllDataRead() {
+                    events.add("done");
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    events.add("error");
+                }
+            });
+        });
+
+        assertEquals(Arrays.asList("data", "done"), events);
+        assertEquals(body, read.toString(StandardCharsets.UTF_8.name()));
+    }
+
+    private ResultActions login(String username, String password, String clientIp) throws Exception {
+        return mockMvc.perform(post("/user/login").contentType(APPLICATION_JSON)
+                .content("{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}")
+                .with(request -> {
+                    request.setRemoteAddr(clientIp);
+                    return request;
+                }));
+    }
+
+    private void saveUser(String username, String password) {
+        User user = new User();
+        user.setUserId(username);
+        user.setUsername(username);
+        user.setEmail(username + "@ratelimit.io");
+        user.setPassword(passwordEncoder.encode(password));
+        user.setJoinDate(new Date());
+        user.setRole(Role.ROLE_USER.name());
+        user.setAuthorities(Role.ROLE_USER.getAuthorities());
+        user.setActive(true);
+        user.setNotLocked(true);
+        userRepository.save(user);
+    }
+}
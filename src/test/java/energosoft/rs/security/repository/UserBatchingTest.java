@@ -0,0 +1,86 @@
+package energosoft.rs.security.repository;
+
+import energosoft.rs.security.domain.User;
+import energosoft.rs.security.enumeration.Role;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Unbatched, with an id per sequence call, each phase below would take one statement per user.
+ **/
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("dev")
+class UserBatchingTest {
+
+    private static final int USERS = 100;
+
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void bulkWritesTakeAFewStatementsPerBatch() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        statistics.clear();
+        List<User> users = transaction.execute(status -> userRepository.saveAll(newUsers()));
+        assertEquals(USERS, statistics.getEntityInsertCount());
+        assertTrue(statistics.getPrepareStatementCount() <= 5, "inserts: " + statistics.getPrepareStatementCount());
+
+        statistics.clear();
+        transaction.executeWithoutResult(status -> userRepository.findAllById(ids(users))
+                .forEach(user -> user.setNotLocked(false)));
+        assertEquals(USERS, statistics.getEntityUpdateCount());
+        assertTrue(statistics.getPrepareStatementCount() <= 3, "updates: " + statistics.getPrepareStatementCount());
+
+        statistics.clear();
+        transaction.executeWithoutResult(status -> userRepository.deleteAll(userRepository.findAllById(ids(users))));
+        assertEquals(USERS, statistics.getEntityDeleteCount());
+        assertTrue(statistics.getPrepareStatementCount() <= 3, "deletes: " + statistics.getPrepareStatementCount());
+    }
+
+    private static List<User> newUsers() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setUserId("batch" + i);
+            user.setUsername("batch" + i);
+            user.setEmail("batch" + i + "@batch.io");
+            user.setPassword("password");
+            user.setJoinDate(new Date());
+            user.setRole(Role.ROLE_USER.name());
+            user.setAuthorities(Role.ROLE_USER.getAuthorities());
+            user.setActive(true);
+            user.setNotLocked(true);
+            users.add(user);
+        }
+        return users;
+    }
+
+    private static List<Long> ids(List<User> users) {
+        List<Long> ids = new ArrayList<>();
+        users.forEach(user -> ids.add(user.getId()));
+        return ids;
+    }
+}
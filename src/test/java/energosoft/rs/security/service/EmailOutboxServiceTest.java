@@ -0,0 +1,55 @@
+package energosoft.rs.security.service;
+
+import energosoft.rs.security.utilty.EmailModelCipher;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  A row encrypted under another key stands in for one queued by a node with a different email.outbox.key.
+ **/
+
+@SpringBootTest
+@ActiveProfiles("dev")
+class EmailOutboxServiceTest {
+
+    @Autowired
+    private EmailOutboxService emailOutboxService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void rowUnderAnotherKeyIsReleasedWithoutCountingAnAttempt() throws Exception {
+        long id = jdbcTemplate.queryForObject("select coalesce(max(id), 0) + 1000 from email_outbox", Long.class);
+        Timestamp due = new Timestamp(System.currentTimeMillis() - 1_000);
+        jdbcTemplate.update("insert into email_outbox (id, template, recipient, model, status, attempts, next_attempt_at, created_at) "
+                + "values (?, 'welcome', 'foreign@x.io', ?, 'PENDING', 0, ?, ?)",
+                id, EmailModelCipher.withRandomKey().encrypt("{\"password\":\"secret\"}"), due, due);
+
+        emailOutboxService.poll();
+        Map<String, Object> row = null;
+        for (int i = 0; i < 50; i++) {
+            row = jdbcTemplate.queryForMap("select status, attempts, next_attempt_at from email_outbox where id = ?", id);
+            if (((Timestamp) row.get("next_attempt_at")).getTime() > System.currentTimeMillis()
+                    && ((Number) row.get("attempts")).intValue() == 0) {
+                break;
+            }
+            Thread.sleep(100);
+        }
+
+        assertEquals("PENDING", row.get("status"));
+        assertEquals(0, ((Number) row.get("attempts")).intValue());
+        assertTrue(((Timestamp) row.get("next_attempt_at")).getTime() > System.currentTimeMillis());
+        jdbcTemplate.update("delete from email_outbox where id = ?", id);
+    }
+}
@@ -0,0 +1,105 @@
+package energosoft.rs.security.service;
+
+import energosoft.rs.security.domain.User;
+import energosoft.rs.security.repository.UserRepository;
+import energosoft.rs.security.service.impl.InProcessUserCacheBus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.mockito.Mockito.*;
+
+/**
+ *  @Author: Veljko Siracki
+ **/
+
+class UserCacheTest {
+
+    private UserRepository userRepository;
+    private UserCache userCache;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        userCache = new UserCache(userRepository, new InProcessUserCacheBus(), new SimpleMeterRegistry(),
+                true, 100, Duration.ofMinutes(1));
+    }
+
+    @Test
+    void servesPrivateCopiesFromOneLoad() {
+        when(userRepository.loadUserByUsername("alice")).thenReturn(user(1L, "alice", "alice@x.io"));
+
+        User first = userCache.getByUsername("alice");
+        first.setNotLocked(false);
+        User second = userCache.getByUsername("alice");
+
+        assertNotSame(first, second);
+        assertEquals(true, second.isNotLocked());
+        assertEquals("alice", userCache.getByEmail("alice@x.io").getUsername());
+        verify(userRepository, times(1)).loadUserByUsername("alice");
+        verify(userRepository, never()).findUserByEmail(anyString());
+        assertEquals(2, userCache.getHitCount());
+    }
+
+    @Test
+    void invalidationReloadsAndRechecksTheEmailIndex() {
+        when(userRepository.loadUserByUsername("alice")).thenReturn(user(1L, "alice", "alice@x.io"));
+        userCache.getByEmail("alice@x.io");
+        when(userRepository.loadUserByUsername("alice")).thenReturn(user(1L, "alice", "new@x.io"));
+
+        userCache.invalidate("alice");
+
+        assertEquals("new@x.io", userCache.getByUsername("alice").getEmail());
+        assertEquals(null, userCache.getByEmail("alice@x.io"));
+        verify(userRepository, times(2)).findUserByEmail("alice@x.io");
+    }
+
+    @Test
+    void doesNotCacheALoadThatRacedWithAnInvalidation() {
+        when(userRepository.loadUserByUsername("alice")).thenAnswer(invocation -> {
+            userCache.invalidate("alice");
+            return user(1L, "alice", "alice@x.io");
+        });
+
+        userCache.getByUsername("alice");
+        userCache.getByUsername("alice");
+
+        verify(userRepository, times(2)).loadUserByUsername("alice");
+        assertEquals(0, userCache.size());
+    }
+
+    @Test
+    void loginDatesGoIntoANewSnapshot() {
+        when(userRepository.loadUserByUsername("alice")).thenReturn(user(1L, "alice", "alice@x.io"));
+        User before = userCache.getByUsername("alice");
+        User login = userCache.getByUsername("alice");
+        login.setLastLoginDate(new Date(2_000));
+        login.setLastLoginDateDisplay(new Date(1_000));
+
+        userCache.updateLastLogin(login);
+        login.getLastLoginDate().setTime(3_000);
+        User other = user(2L, "alice", "alice@x.io");
+        other.setLastLoginDate(new Date(4_000));
+        userCache.updateLastLogin(other);
+
+        User after = userCache.getByUsername("alice");
+        assertEquals(null, before.getLastLoginDate());
+        assertEquals(new Date(2_000), after.getLastLoginDate());
+        assertEquals(new Date(1_000), after.getLastLoginDateDisplay());
+        verify(userRepository, times(1)).loadUserByUsername("alice");
+    }
+
+    private static User user(Long id, String username, String email) {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        user.setEmail(email);
+        user.setNotLocked(true);
+        return user;
+    }
+}
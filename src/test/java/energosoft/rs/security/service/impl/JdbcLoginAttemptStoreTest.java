@@ -0,0 +1,86 @@
+package energosoft.rs.security.service.impl;
+
+import energosoft.rs.security.service.LoginAttemptStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *  @Author: Veljko Siracki
+ *
+ *  Two store instances over the same H2 database stand in for two nodes.
+ **/
+
+@SpringBootTest(properties = "login.attempts.store=jdbc")
+@ActiveProfiles("dev")
+class JdbcLoginAttemptStoreTest {
+
+    @Autowired
+    private LoginAttemptStore loginAttemptStore;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void jdbcStoreIsSelectedByProperty() {
+        assertTrue(loginAttemptStore instanceof JdbcLoginAttemptStore);
+    }
+
+    @Test
+    void attemptsAreBatchedAndSharedBetweenNodes() {
+        JdbcLoginAttemptStore first = newNode();
+        JdbcLoginAttemptStore second = newNode();
+        long now = System.currentTimeMillis();
+        int rows = countRows();
+
+        for (int i = 0; i < 3; i++) {
+            first.increment("alice", now);
+        }
+        assertEquals(3, first.count("alice", now));
+        assertEquals(0, second.count("alice", now));
+
+        first.flush();
+        assertEquals(rows + 1, countRows());
+        assertEquals(3, second.count("alice", now));
+
+        second.increment("alice", now);
+        second.increment("alice", now);
+        second.flush();
+        assertEquals(5, first.count("alice", now));
+        assertEquals(5, second.count("alice", now));
+        assertEquals(rows + 1, countRows());
+    }
+
+    @Test
+    void resetClearsTheSharedCounter() {
+        JdbcLoginAttemptStore first = newNode();
+        JdbcLoginAttemptStore second = newNode();
+        long now = System.currentTimeMillis();
+        first.increment("bob", now);
+        first.increment("bob", now);
+        first.flush();
+
+        second.reset("bob");
+        assertEquals(0, second.count("bob", now));
+        second.flush();
+
+        assertEquals(0, first.count("bob", now));
+    }
+
+    private JdbcLoginAttemptStore newNode() {
+        return new JdbcLoginAttemptStore(jdbcTemplate, transactionManager, Duration.ofMinutes(15), Duration.ZERO, 1000);
+    }
+
+    private int countRows() {
+        return jdbcTemplate.queryForObject("select count(*) from login_attempt", Integer.class);
+    }
+}
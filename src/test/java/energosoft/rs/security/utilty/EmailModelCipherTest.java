@@ -0,0 +1,45 @@
+package energosoft.rs.security.utilty;
+
+import org.junit.jupiter.api.Test;
+
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ *  @Author: Veljko Siracki
+ **/
+
+class EmailModelCipherTest {
+
+    private static final String MODEL = "{\"firstName\":\"Alice\",\"password\":\"s3cr3tPass\"}";
+
+    @Test
+    void roundTripsWithoutLeakingThePlaintext() throws Exception {
+        EmailModelCipher cipher = new EmailModelCipher(new byte[32]);
+        String first = cipher.encrypt(MODEL);
+        String second = cipher.encrypt(MODEL);
+
+        assertNotEquals(first, second);
+        assertFalse(new String(Base64.getDecoder().decode(first)).contains("s3cr3tPass"));
+        assertEquals(MODEL, cipher.decrypt(first));
+        assertEquals(MODEL, new EmailModelCipher(new byte[32]).decrypt(second));
+    }
+
+    @Test
+    void rejectsChangedOrForeignValues() {
+        String encrypted = new EmailModelCipher(new byte[32]).encrypt(MODEL);
+        byte[] changed = Base64.getDecoder().decode(encrypted);
+        changed[changed.length - 1] ^= 1;
+
+        assertThrows(GeneralSecurityException.class,
+                () -> new EmailModelCipher(new byte[32]).decrypt(Base64.getEncoder().encodeToString(changed)));
+        assertThrows(GeneralSecurityException.class, () -> EmailModelCipher.withRandomKey().decrypt(encrypted));
+        assertThrows(GeneralSecurityException.class, () -> new EmailModelCipher(new byte[32]).decrypt("not base64!"));
+        assertThrows(IllegalArgumentException.class, () -> new EmailModelCipher(new byte[20]));
+    }
+}
@@ -0,0 +1,54 @@
+package energosoft.rs.security.utilty;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *  @Author: Veljko Siracki
+ **/
+
+class EmailTemplateTest {
+
+    @Test
+    void rendersVariablesBetweenStaticText() {
+        EmailTemplate template = EmailTemplate.compile("Hello {{firstName}}, your password is: {{ password }}.", false);
+        Map<String, String> model = new HashMap<>();
+        model.put("firstName", "Željko");
+        model.put("password", "aB3dE6gH9j");
+
+        assertEquals("Hello Željko, your password is: aB3dE6gH9j.", template.renderString(model));
+        assertFalse(template.isStatic());
+    }
+
+    @Test
+    void escapesValuesInHtmlTemplates() {
+        EmailTemplate template = EmailTemplate.compile("<p>{{firstName}}</p>", true);
+
+        assertEquals("<p>&lt;script&gt;&amp;</p>",
+                template.renderString(Collections.singletonMap("firstName", "<script>&")));
+    }
+
+    @Test
+    void resolvesGlobalsAtCompileTime() {
+        EmailTemplate template = EmailTemplate.compile("Welcome to {{subject}}", true,
+                Collections.singletonMap("subject", "Energosoft & ITSS"));
+
+        assertTrue(template.isStatic());
+        assertEquals("Welcome to Energosoft &amp; ITSS", template.renderString(Collections.emptyMap()));
+    }
+
+    @Test
+    void rejectsMissingVariables() {
+        EmailTemplate template = EmailTemplate.compile("Hello {{firstName}}", false);
+
+        assertThrows(IllegalArgumentException.class, () -> template.render(Collections.emptyMap()));
+    }
+}
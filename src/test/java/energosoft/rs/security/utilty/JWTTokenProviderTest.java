@@ -0,0 +1,39 @@
+package energosoft.rs.security.utilty;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Collections;
+
+import static energosoft.rs.security.constant.SecurityConstant.AUTHORITY_MASK;
+import static energosoft.rs.security.constant.SecurityConstant.GET_ARRAYS_LLC;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ *  @Author: Veljko Siracki
+ **/
+
+class JWTTokenProviderTest {
+
+    private final JwtKeySet jwtKeySet = JwtKeySet.hmac("secret");
+    private final JWTTokenProvider jwtTokenProvider = new JWTTokenProvider(jwtKeySet);
+
+    @Test
+    void verifiesItsOwnTokens() {
+        String token = jwtTokenProvider.generateJwtToken("alice",
+                Collections.singletonList(new SimpleGrantedAuthority("user:read")));
+
+        assertEquals("alice", jwtTokenProvider.verifyToken(token).getSubject());
+    }
+
+    @Test
+    void rejectsASignedTokenWithoutExpiry() {
+        String token = jwtKeySet.sign(JWT.create().withIssuer(GET_ARRAYS_LLC).withSubject("alice")
+                .withClaim(AUTHORITY_MASK, 1));
+
+        assertThrows(JWTVerificationException.class, () -> jwtTokenProvider.verifyToken(token));
+    }
+}
@@ -0,0 +1,53 @@
+package energosoft.rs.security.utilty;
+
+import com.auth0.jwt.JWT;
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Duration;
+import java.util.Base64;
+
+import static energosoft.rs.security.constant.SecurityConstant.GET_ARRAYS_LLC;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ *  @Author: Veljko Siracki
+ **/
+
+class JwtKeySetTest {
+
+    @Test
+    void configuredKeysAreNeverRotated() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair keyPair = generator.generateKeyPair();
+        String privateKey = Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded());
+        String publicKey = Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded());
+        JwtKeySet first = new JwtKeySet("secret", JwtKeySet.ES256, Duration.ofMillis(1), privateKey, publicKey);
+        JwtKeySet second = new JwtKeySet("secret", JwtKeySet.ES256, Duration.ofMillis(1), privateKey, publicKey);
+        Thread.sleep(5);
+
+        first.rotateIfDue();
+
+        String token = first.sign(JWT.create().withIssuer(GET_ARRAYS_LLC));
+        second.getVerifier(JWT.decode(token).getKeyId()).verify(token);
+        assertThrows(IllegalStateException.class, first::rotate);
+    }
+
+    @Test
+    void generatedKeysRotateWhenDue() throws Exception {
+        JwtKeySet keySet = new JwtKeySet("secret", JwtKeySet.ES256, Duration.ofMillis(1), null, null);
+        String before = JWT.decode(keySet.sign(JWT.create().withIssuer(GET_ARRAYS_LLC))).getKeyId();
+        Thread.sleep(5);
+
+        keySet.rotateIfDue();
+
+        String token = keySet.sign(JWT.create().withIssuer(GET_ARRAYS_LLC));
+        assertNotEquals(before, JWT.decode(token).getKeyId());
+        assertEquals(2, keySet.getJwkSetJson().split("\"kid\"").length - 1);
+    }
+}
@@ -0,0 +1,104 @@
+package energosoft.rs.security.utilty;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *  @Author: Veljko Siracki
+ **/
+
+class RateLimiterTest {
+
+    private static final long NOW = System.currentTimeMillis() + 3_600_000;  // after the origin of every table
+    private static final long MINUTE = 60_000;
+
+    @Test
+    void burstsUpToCapacityThenRefillsOneTokenPerInterval() {
+        RateLimiter rateLimiter = new RateLimiter(1 << 10);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, rateLimiter.tryAcquire("alice", 5, 5_000, NOW));
+        }
+        assertEquals(1_000, rateLimiter.tryAcquire("alice", 5, 5_000, NOW));
+        assertEquals(400, rateLimiter.tryAcquire("alice", 5, 5_000, NOW + 600));
+
+        assertEquals(0, rateLimiter.tryAcquire("alice", 5, 5_000, NOW + 1_000));
+        assertTrue(rateLimiter.tryAcquire("alice", 5, 5_000, NOW + 1_000) > 0);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, rateLimiter.tryAcquire("alice", 5, 5_000, NOW + 20_000));
+        }
+    }
+
+    @Test
+    void keysHaveTheirOwnBuckets() {
+        RateLimiter rateLimiter = new RateLimiter(1 << 10);
+        assertEquals(0, rateLimiter.tryAcquire("alice", 1, MINUTE, NOW));
+        assertTrue(rateLimiter.tryAcquire("alice", 1, MINUTE, NOW) > 0);
+        assertEquals(0, rateLimiter.tryAcquire("bob", 1, MINUTE, NOW));
+    }
+
+    @Test
+    void fullSharingTableThrottlesInsteadOfForgetting() {
+        RateLimiter rateLimiter = new RateLimiter(2);
+        List<String> admitted = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            if (rateLimiter.tryAcquire("key" + i, 1, MINUTE, NOW) == 0) {
+                admitted.add("key" + i);
+            }
+        }
+        assertTrue(admitted.size() <= rateLimiter.maxBuckets(), "admitted " + admitted);
+        for (String key : admitted) {
+            assertTrue(rateLimiter.tryAcquire(key, 1, MINUTE, NOW + 1) > 0, key + " was forgotten");
+        }
+        assertEquals(0, rateLimiter.tryAcquire("key0", 1, MINUTE, NOW + MINUTE));
+    }
+
+    @Test
+    void fullNonSharingTableNeverThrottlesAKeyByAnotherKeysBucket() {
+        RateLimiter rateLimiter = new RateLimiter(2, false);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, rateLimiter.tryAcquire("key" + i, 1, MINUTE, NOW + i));
+        }
+        // a single key is still limited while it keeps its slot
+        assertEquals(0, rateLimiter.tryAcquire("route", 2, MINUTE, NOW + 200));
+        assertEquals(0, rateLimiter.tryAcquire("route", 2, MINUTE, NOW + 200));
+        assertTrue(rateLimiter.tryAcquire("route", 2, MINUTE, NOW + 200) > 0);
+    }
+
+    @Test
+    void concurrentCallersNeverTakeMoreThanCapacity() throws Exception {
+        int threads = 16;
+        int capacity = 1_000;
+        RateLimiter rateLimiter = new RateLimiter(1 << 10);
+        AtomicInteger admitted = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < threads; thread++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < capacity; i++) {
+                    if (rateLimiter.tryAcquire("route:login", capacity, MINUTE, NOW) == 0) {
+                        admitted.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertEquals(capacity, admitted.get());
+    }
+}
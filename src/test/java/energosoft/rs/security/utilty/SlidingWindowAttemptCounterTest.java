@@ -0,0 +1,98 @@
+package energosoft.rs.security.utilty;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *  @Author: Veljko Siracki
+ **/
+
+class SlidingWindowAttemptCounterTest {
+
+    private static final long NOW = 1_600_000_000_000L;
+
+    @Test
+    void concurrentIncrementsAreNeverLost() throws Exception {
+        int threads = 16;
+        int keys = 64;
+        int incrementsPerKey = 1_000;
+        SlidingWindowAttemptCounter counter = new SlidingWindowAttemptCounter(1 << 16, Duration.ofMinutes(15));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < threads; thread++) {
+            int offset = thread;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < incrementsPerKey; i++) {
+                    for (int key = 0; key < keys; key++) {
+                        counter.increment("user" + (key + offset) % keys, NOW);
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        for (int key = 0; key < keys; key++) {
+            assertEquals(threads * incrementsPerKey, counter.count("user" + key, NOW));
+        }
+    }
+
+    @Test
+    void attemptsSlideOutOfTheWindow() {
+        SlidingWindowAttemptCounter counter = new SlidingWindowAttemptCounter(1024, Duration.ofMillis(1_000));
+        long windowStart = NOW - NOW % 1_000;
+        for (int i = 0; i < 5; i++) {
+            counter.increment("alice", windowStart + 100);
+        }
+
+        assertEquals(5, counter.count("alice", windowStart + 900));
+        assertEquals(5, counter.count("alice", windowStart + 1_100));
+        assertEquals(2, counter.count("alice", windowStart + 1_600));
+        assertEquals(0, counter.count("alice", windowStart + 2_100));
+    }
+
+    @Test
+    void resetForgetsTheKey() {
+        SlidingWindowAttemptCounter counter = new SlidingWindowAttemptCounter(1024, Duration.ofMinutes(15));
+        counter.increment("alice", NOW);
+        counter.increment("alice", NOW);
+
+        counter.reset("alice");
+
+        assertEquals(0, counter.count("alice", NOW));
+        assertEquals(1, counter.increment("alice", NOW));
+    }
+
+    @Test
+    void floodOfOneOffKeysStaysBoundedAndKeepsHotKeys() {
+        SlidingWindowAttemptCounter counter = new SlidingWindowAttemptCounter(1024, Duration.ofMinutes(15));
+        for (int i = 0; i < 4; i++) {
+            counter.increment("victim", NOW);
+        }
+
+        for (int i = 0; i < 1_000_000; i++) {
+            counter.increment("stuffed" + i, NOW);
+        }
+
+        assertEquals(1024, counter.capacity());
+        assertEquals(4, counter.count("victim", NOW));
+        assertTrue(counter.increment("victim", NOW) >= 5);
+    }
+}
@@ -0,0 +1,191 @@
+package energosoft.rs.security.utilty;
+
+import energosoft.rs.security.configuration.EmailProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ *  @Author: Veljko Siracki
+ **/
+
+class SmtpTransportPoolTest {
+
+    private FakeSmtpServer server;
+    private SmtpTransportPool pool;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = new FakeSmtpServer();
+    }
+
+    @AfterEach
+    void stopServer() throws IOException {
+        if (pool != null) {
+            pool.close();
+        }
+        server.close();
+    }
+
+    @Test
+    void sendsSeveralMessagesOverOneConnection() throws MessagingException {
+        pool = new SmtpTransportPool(smtp(100, Duration.ofSeconds(5)));
+
+        for (int i = 0; i < 3; i++) {
+            pool.send(message("user" + i + "@example.com"));
+        }
+
+        assertEquals(1, server.connections.get());
+        assertEquals(3, server.messages.get());
+        assertEquals(1, pool.idleConnections());
+    }
+
+    @Test
+    void opensANewConnectionAfterMaxMessagesPerConnection() throws MessagingException {
+        pool = new SmtpTransportPool(smtp(2, Duration.ofSeconds(5)));
+
+        for (int i = 0; i < 5; i++) {
+            pool.send(message("user" + i + "@example.com"));
+        }
+
+        assertEquals(3, server.connections.get());
+        assertEquals(5, server.messages.get());
+    }
+
+    @Test
+    void replacesAConnectionClosedByTheServer() throws MessagingException {
+        pool = new SmtpTransportPool(smtp(100, Duration.ZERO));
+        server.dropAfterMessage = true;
+
+        pool.send(message("first@example.com"));
+        pool.send(message("second@example.com"));
+
+        assertEquals(2, server.connections.get());
+        assertEquals(2, server.messages.get());
+    }
+
+    @Test
+    void evictsIdleConnections() throws MessagingException {
+        EmailProperties.Smtp smtp = smtp(100, Duration.ofSeconds(5));
+        smtp.getPool().setMaxIdle(Duration.ZERO);
+        pool = new SmtpTransportPool(smtp);
+
+        pool.send(message("user@example.com"));
+        pool.evictIdle();
+
+        assertEquals(0, pool.idleConnections());
+    }
+
+    private EmailProperties.Smtp smtp(int maxMessagesPerConnection, Duration validateAfterIdle) {
+        EmailProperties.Smtp smtp = new EmailProperties.Smtp();
+        smtp.setProtocol("smtp");
+        smtp.setHost("localhost");
+        smtp.setPort(server.port());
+        smtp.setAuth(false);
+        smtp.setStartTls(false);
+        smtp.getPool().setMaxMessagesPerConnection(maxMessagesPerConnection);
+        smtp.getPool().setValidateAfterIdle(validateAfterIdle);
+        return smtp;
+    }
+
+    private Message message(String recipient) throws MessagingException {
+        Message message = new MimeMessage(pool.getSession());
+        message.setFrom(new InternetAddress("support@example.com"));
+        message.setRecipients(Message.RecipientType.TO, InternetAddress.parse(recipient, false));
+        message.setSubject("Test");
+        message.setText("Hello");
+        return message;
+    }
+
+    /** Accepts every message, just enough SMTP for JavaMail without TLS and AUTH. */
+    private static final class FakeSmtpServer implements AutoCloseable {
+
+        private final ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        private final AtomicInteger connections = new AtomicInteger();
+        private final AtomicInteger messages = new AtomicInteger();
+        private volatile boolean dropAfterMessage;
+
+        private FakeSmtpServer() throws IOException {
+            Thread acceptor = new Thread(this::accept, "fake-smtp");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        private int port() {
+            return serverSocket.getLocalPort();
+        }
+
+        private void accept() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    connections.incrementAndGet();
+                    Thread session = new Thread(() -> serve(socket), "fake-smtp-session");
+                    session.setDaemon(true);
+                    session.start();
+                } catch (IOException exception) {
+                    return;
+                }
+            }
+        }
+
+        private void serve(Socket socket) {
+            try (Socket client = socket;
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.US_ASCII));
+                 Writer writer = new OutputStreamWriter(client.getOutputStream(), StandardCharsets.US_ASCII)) {
+                reply(writer, "220 localhost ESMTP");
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String command = line.length() < 4 ? line : line.substring(0, 4).toUpperCase(Locale.ROOT);
+                    if (command.equals("DATA")) {
+                        reply(writer, "354 End data with <CR><LF>.<CR><LF>");
+                        while ((line = reader.readLine()) != null && !line.equals(".")) {
+                            // message content is not checked
+                        }
+                        messages.incrementAndGet();
+                        reply(writer, "250 OK");
+                        if (dropAfterMessage) {
+                            return;
+                        }
+                    } else if (command.equals("QUIT")) {
+                        reply(writer, "221 Bye");
+                        return;
+                    } else {
+                        reply(writer, "250 OK");
+                    }
+                }
+            } catch (IOException exception) {
+                // client went away
+            }
+        }
+
+        private static void reply(Writer writer, String reply) throws IOException {
+            writer.write(reply + "\r\n");
+            writer.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+        }
+    }
+}
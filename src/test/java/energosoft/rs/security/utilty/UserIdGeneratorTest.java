@@ -0,0 +1,121 @@
+package energosoft.rs.security.utilty;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ *  @Author: Veljko Siracki
+ **/
+
+class UserIdGeneratorTest {
+
+    private static final long NOW = 1_600_000_000_000L;
+
+    @Test
+    void idsSortByTimeAcrossFullMillisecondsAndClockSteps() {
+        UserIdGenerator generator = new UserIdGenerator(7);
+        String previous = generator.next(NOW);
+        long[] clock = { NOW, NOW - 5_000, NOW + 1, NOW + 1_000 };
+        for (long now : clock) {
+            for (int i = 0; i < 5_000; i++) {  // more than one millisecond's sequence
+                String id = generator.next(now);
+                assertEquals(13, id.length());
+                assertTrue(id.compareTo(previous) > 0, previous + " then " + id);
+                previous = id;
+            }
+        }
+    }
+
+    @Test
+    void seededGeneratorContinuesAfterTheStoredIdWhenTheClockIsBehind() {
+        UserIdGenerator beforeRestart = new UserIdGenerator(3);
+        String stored = null;
+        for (int i = 0; i < 5_000; i++) {  // borrows from the next millisecond
+            stored = beforeRestart.next(NOW);
+        }
+        UserIdGenerator afterRestart = new UserIdGenerator(3);
+        afterRestart.seed("1234567890");
+        afterRestart.seed(null);
+        afterRestart.seed(stored);
+
+        String next = afterRestart.next(NOW - 10_000);
+        assertTrue(next.compareTo(stored) > 0, stored + " then " + next);
+    }
+
+    @Test
+    void seedFromAnotherNodesIdNeverReissuesThisNodesIds() {
+        UserIdGenerator node0 = new UserIdGenerator(0);
+        UserIdGenerator node1 = new UserIdGenerator(1);
+        Set<String> issuedByNode0 = new HashSet<>();
+        for (int i = 0; i < 5; i++) {
+            issuedByNode0.add(node0.next(NOW));
+        }
+        String newest = node1.next(NOW);  // same millisecond, lower sequence, higher node
+        assertTrue(issuedByNode0.stream().allMatch(id -> id.compareTo(newest) < 0));
+
+        UserIdGenerator node0AfterRestart = new UserIdGenerator(0);
+        node0AfterRestart.seed(newest);
+        for (int i = 0; i < 10; i++) {
+            String next = node0AfterRestart.next(NOW - 10);
+            assertFalse(issuedByNode0.contains(next), next + " was issued before the restart");
+            assertTrue(next.compareTo(newest) > 0, newest + " then " + next);
+        }
+    }
+
+    @Test
+    void latestPossibleBoundsEveryIdUpToItsTime() {
+        UserIdGenerator generator = new UserIdGenerator(UserIdGenerator.MAX_NODE);
+        for (int i = 0; i < 5_000; i++) {
+            generator.next(NOW);
+        }
+        assertTrue(generator.next(NOW).compareTo(UserIdGenerator.latestPossible(NOW + 1)) <= 0);
+        assertTrue(new UserIdGenerator(0).next(NOW + 2).compareTo(UserIdGenerator.latestPossible(NOW + 1)) > 0);
+    }
+
+    @Test
+    void nodesNeverCollide() {
+        assertNotEquals(new UserIdGenerator(1).next(NOW), new UserIdGenerator(2).next(NOW));
+        assertThrows(IllegalArgumentException.class, () -> new UserIdGenerator(UserIdGenerator.MAX_NODE + 1));
+    }
+
+    @Test
+    void concurrentCallersGetDistinctIds() throws Exception {
+        int threads = 16;
+        int idsPerThread = 10_000;
+        UserIdGenerator generator = new UserIdGenerator(0);
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < threads; thread++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < idsPerThread; i++) {
+                    ids.add(generator.next(NOW));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertEquals(threads * idsPerThread, ids.size());
+    }
+}